@@ -0,0 +1,95 @@
+package io.github.mjoe92.easypdfbox;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates the text of the benchmarks: a fixed seed keeps the corpus the same across runs and releases, so the
+ * results stay comparable. The words mix short and long, hyphenated and accented ones like business reports do.
+ */
+final class Corpus {
+
+    private static final String[] WORDS = {
+            "the", "of", "and", "a", "to", "in", "is", "for", "on", "with", "as", "by", "at", "from",
+            "report", "invoice", "customer", "amount", "quarterly", "revenue", "department", "management",
+            "agreement", "responsibility", "well-known", "up-to-date", "Müller", "Straße", "café", "Zürich",
+            "AVATAR", "WAVE", "LAVA", "2025-10-16", "1,234.56", "€", "ID-0042", "e-mail", "international",
+            "documentation", "implementation", "performance", "the\tend", "über", "naïve", "Ärger"
+    };
+
+    private final Random random;
+
+    Corpus(long seed) {
+        random = new Random(seed);
+    }
+
+    /**
+     * @param wordCount
+     *         the number of words
+     * @return the words separated with spaces, ending with a full stop
+     */
+    String sentence(int wordCount) {
+        StringBuilder sentence = new StringBuilder(wordCount * 8);
+        for (int index = 0; index < wordCount; index++) {
+            if (index > 0) {
+                sentence.append(' ');
+            }
+
+            sentence.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+
+        return sentence.append('.').toString();
+    }
+
+    /**
+     * @param sentenceCount
+     *         the number of sentences
+     * @return the sentences of 8 to 24 words
+     */
+    String paragraph(int sentenceCount) {
+        StringBuilder paragraph = new StringBuilder(sentenceCount * 128);
+        for (int index = 0; index < sentenceCount; index++) {
+            if (index > 0) {
+                paragraph.append(' ');
+            }
+
+            paragraph.append(sentence(8 + random.nextInt(17)));
+        }
+
+        return paragraph.toString();
+    }
+
+    /**
+     * @param itemCount
+     *         the number of items
+     * @return the list items of 2 to 9 words
+     */
+    List<String> listItems(int itemCount) {
+        List<String> items = new ArrayList<>(itemCount);
+        for (int index = 0; index < itemCount; index++) {
+            items.add(sentence(2 + random.nextInt(8)));
+        }
+
+        return items;
+    }
+
+    /**
+     * Adds sections of a heading, paragraphs and a list, like a typical generated report.
+     *
+     * @param document
+     *         the document to fill
+     * @param sections
+     *         the number of sections
+     */
+    void fill(EasyDocument document, int sections) {
+        for (int section = 0; section < sections; section++) {
+            document.addHeading("Section " + section + " " + sentence(3), true, false);
+            document.addParagraph(paragraph(4));
+            document.addList(listItems(5), "- ", 10);
+            document.addUnderlinedTitleColonValue("Total", sentence(2));
+            document.addParagraph(paragraph(2));
+            document.addNewline();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package io.github.mjoe92.easypdfbox;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.fontbox.ttf.TTFParser;
+import org.apache.fontbox.ttf.TrueTypeFont;
+import org.apache.pdfbox.io.RandomAccessReadBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Font loading: parsing a font (or reading the metrics of a bundled font) into the {@link FontRegistry} happens once
+ * per process, creating an {@link EasyDocument} only prepares the registered fonts to be loaded into the document.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FontLoadBenchmark {
+
+    private byte[] fontData;
+    private byte[] metricsData;
+
+    @Setup
+    public void setUp() throws IOException {
+        try (InputStream fontStream = FontRegistry.class.getResourceAsStream(FontRegistry.CALIBRI + ".ttf")) {
+            fontData = fontStream.readAllBytes();
+        }
+
+        try (InputStream metricsStream = FontRegistry.class.getResourceAsStream(FontRegistry.CALIBRI + FontMetrics.EXTENSION)) {
+            metricsData = metricsStream.readAllBytes();
+        }
+
+        // parse the bundled fonts before measuring the constructor
+        FontRegistry.get(FontRegistry.CALIBRI);
+        FontRegistry.get(FontRegistry.CALIBRI_BOLD);
+    }
+
+    @Benchmark
+    public RegisteredFont parseFont() throws IOException {
+        TrueTypeFont trueTypeFont = new TTFParser().parse(new RandomAccessReadBuffer(fontData));
+        try (trueTypeFont) {
+            return new RegisteredFont(FontRegistry.CALIBRI, trueTypeFont);
+        }
+    }
+
+    /** Reading the metrics generated at build time, which replaces parsing the bundled fonts until they're embedded. */
+    @Benchmark
+    public FontMetrics readMetrics() throws IOException {
+        return FontMetrics.read(new ByteArrayInputStream(metricsData));
+    }
+
+    @Benchmark
+    public EasyDocument newDocument() {
+        return new EasyDocument(50);
+    }
+}
@@ -0,0 +1,65 @@
+package io.github.mjoe92.easypdfbox;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Creating a document of many paragraphs and lists: adding the text (wrapping and buffering it), measuring it (the
+ * layout only) and converting it (laying out the pages, writing their content and saving them). The document is written into a discarding
+ * stream, so only the generation is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LayoutBenchmark {
+
+    /** Number of report sections, a section fills about half a page. */
+    @Param({"20", "200"})
+    private int sections;
+
+    /** Whether the content of the pages is written on the common fork-join pool or on the benchmark thread. */
+    @Param({"true", "false"})
+    private boolean parallel;
+
+    @Benchmark
+    public EasyDocument addText() {
+        EasyDocument document = new EasyDocument(50);
+        new Corpus(42).fill(document, sections);
+        return document;
+    }
+
+    @Benchmark
+    public DocumentMeasure measure() throws IOException {
+        EasyDocument document = new EasyDocument(50);
+        new Corpus(42).fill(document, sections);
+        return document.measure();
+    }
+
+    @Benchmark
+    public boolean convert() throws IOException {
+        EasyDocument document = new EasyDocument(50);
+        if (!parallel) {
+            document.setExecutor(null);
+        }
+
+        document.setHeader("Quarterly report", true, false);
+        document.setFooter("Confidential");
+        new Corpus(42).fill(document, sections);
+        return document.convert(OutputStream.nullOutputStream());
+    }
+}
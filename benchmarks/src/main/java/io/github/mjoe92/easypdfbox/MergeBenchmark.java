@@ -0,0 +1,68 @@
+package io.github.mjoe92.easypdfbox;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Inserting existing PDF documents with <code>addNewPages</code> between generated pages. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MergeBenchmark {
+
+    /** Number of inserted documents. */
+    @Param({"10", "50"})
+    private int inserts;
+
+    private byte[] pages;
+    private InsertCache insertCache;
+
+    @Setup
+    public void setUp() throws IOException {
+        EasyDocument document = new EasyDocument(50);
+        new Corpus(7).fill(document, 8);
+        pages = document.convert(64 * 1024);
+        insertCache = new InsertCache(16 * 1024 * 1024);
+    }
+
+    @Benchmark
+    public boolean addNewPages() throws IOException {
+        EasyDocument document = new EasyDocument(50);
+        Corpus corpus = new Corpus(42);
+        for (int index = 0; index < inserts; index++) {
+            document.addParagraph(corpus.paragraph(3));
+            document.addNewPages(pages);
+        }
+
+        return document.convert(OutputStream.nullOutputStream());
+    }
+
+    /** The inserted document is parsed once for all the operations, as when many documents insert it. */
+    @Benchmark
+    public boolean addNewPagesCached() throws IOException {
+        EasyDocument document = new EasyDocument(50);
+        document.setInsertCache(insertCache);
+        Corpus corpus = new Corpus(42);
+        for (int index = 0; index < inserts; index++) {
+            document.addParagraph(corpus.paragraph(3));
+            document.addNewPages(pages);
+        }
+
+        return document.convert(OutputStream.nullOutputStream());
+    }
+}
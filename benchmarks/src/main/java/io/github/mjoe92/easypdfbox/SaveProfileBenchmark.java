@@ -0,0 +1,74 @@
+package io.github.mjoe92.easypdfbox;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The size versus save time trade-off of the {@link SaveProfile}s: converting a document with every profile. The
+ * time is the score, the size of the written document is reported as the <code>outputBytes</code> counter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SaveProfileBenchmark {
+
+    @Param({"FASTEST", "BALANCED", "SMALLEST"})
+    private SaveProfile profile;
+
+    /** Number of report sections, a section fills about half a page. */
+    @Param({"200"})
+    private int sections;
+
+    @Benchmark
+    public boolean convert(OutputSize outputSize) throws IOException {
+        EasyDocument document = new EasyDocument(50);
+        document.setSaveProfile(profile);
+        document.setHeader("Quarterly report", true, false);
+        document.setFooter("Confidential");
+        new Corpus(42).fill(document, sections);
+
+        CountingOutputStream outputStream = new CountingOutputStream();
+        boolean converted = document.convert(outputStream);
+        outputSize.outputBytes = outputStream.count;
+        return converted;
+    }
+
+    /** The size of the last written document, the same for every conversion with a profile. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class OutputSize {
+
+        public long outputBytes;
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int offset, int length) {
+            count += length;
+        }
+    }
+}
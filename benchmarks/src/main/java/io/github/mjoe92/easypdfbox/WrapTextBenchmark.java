@@ -0,0 +1,63 @@
+package io.github.mjoe92.easypdfbox;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Wrapping the text into lines, as <code>EasyDocument.wrapText</code> does for every added text. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WrapTextBenchmark {
+
+    /** Number of sentences: a one-line caption or a long paragraph. */
+    @Param({"1", "50"})
+    private int sentences;
+
+    @Param({"false", "true"})
+    private boolean kerning;
+
+    private String text;
+    private GlyphWidths widths;
+    private float maxWidth;
+    private LineRanges lineRanges;
+    private WrapCache wrapCache;
+
+    @Setup
+    public void setUp() {
+        text = new Corpus(42).paragraph(sentences);
+        widths = FontRegistry.get(FontRegistry.CALIBRI).getWidths();
+        maxWidth = PDRectangle.A4.getWidth() - 100;
+        lineRanges = new LineRanges();
+        wrapCache = new WrapCache(1024);
+    }
+
+    @Benchmark
+    public LineRanges wrapText() {
+        lineRanges.clear();
+        LineBreaker.wrap(text, 0, text.length(), widths, TextType.PARAGRAPH.getFontSize(), kerning, maxWidth, lineRanges);
+        return lineRanges;
+    }
+
+    /** The same text wrapped through the cache: every call after the first is a hit, unless the text is too long to cache. */
+    @Benchmark
+    public LineRanges wrapTextCached() {
+        lineRanges.clear();
+        wrapCache.wrap(text, widths, TextType.PARAGRAPH.getFontSize(), kerning, maxWidth, lineRanges);
+        return lineRanges;
+    }
+}
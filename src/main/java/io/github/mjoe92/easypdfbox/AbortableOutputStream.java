@@ -0,0 +1,28 @@
+package io.github.mjoe92.easypdfbox;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/** Runs a check before the bytes are written into the underlying stream, which aborts the writing by throwing. */
+final class AbortableOutputStream extends FilterOutputStream {
+
+    private final Runnable check;
+
+    AbortableOutputStream(OutputStream outputStream, Runnable check) {
+        super(outputStream);
+        this.check = check;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        check.run();
+        out.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int offset, int length) throws IOException {
+        check.run();
+        out.write(b, offset, length);
+    }
+}
@@ -0,0 +1,202 @@
+package io.github.mjoe92.easypdfbox;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Generates many independent documents, each on its own virtual thread. At most <code>parallelism</code> documents
+ * are generated at once: reading the next spec waits for a free slot, so the specs are consumed only as fast as the
+ * documents are written and nothing queues up in memory. The fonts and their width tables are parsed once in the
+ * {@link FontRegistry} and shared by all the documents.
+ * <p>
+ * The documents write their pages on their own thread, also the pages laid out while the text is added, so the
+ * parallelism isn't exceeded by writing pages on another executor.
+ */
+public final class BatchGenerator {
+
+    private final int parallelism;
+
+    /**
+     * @param parallelism
+     *         the maximum number of documents generated at once
+     */
+    public BatchGenerator(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("The parallelism must be positive: " + parallelism);
+        }
+
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Generates a document of every spec and writes it into the sink. A failing document is reported to the sink and
+     * doesn't stop the others. Returns once all the documents are written.
+     *
+     * @param specs
+     *         the specs of the documents, consumed lazily
+     * @param documents
+     *         creates an empty document, e.g. {@link DocumentTemplate#newDocument()}, called on the virtual thread of
+     *         the document
+     * @param renderer
+     *         fills the document of a spec, called on the virtual thread of the document
+     * @param sink
+     *         receives the documents, called concurrently from the virtual threads
+     * @param <S>
+     *         the type of the spec
+     * @return the number of generated, empty and failed documents
+     */
+    public <S> Result generate(Stream<S> specs, Supplier<EasyDocument> documents, Renderer<S> renderer, Sink<S> sink) throws InterruptedException {
+        Semaphore slots = new Semaphore(parallelism);
+        AtomicLong generated = new AtomicLong();
+        AtomicLong empty = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+
+        // closing the executor waits for the running documents, also when interrupted
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor(); specs) {
+            Iterator<S> iterator = specs.iterator();
+            while (iterator.hasNext()) {
+                slots.acquire();
+                S spec = iterator.next();
+
+                executor.execute(() -> {
+                    try {
+                        if (generate(spec, documents, renderer, sink)) {
+                            generated.incrementAndGet();
+                        } else {
+                            empty.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        failed.incrementAndGet();
+                        sink.failed(spec, e);
+                    } finally {
+                        slots.release();
+                    }
+                });
+            }
+        }
+
+        return new Result(generated.get(), empty.get(), failed.get());
+    }
+
+    private static <S> boolean generate(S spec, Supplier<EasyDocument> documents, Renderer<S> renderer, Sink<S> sink) throws IOException {
+        // closes the document also when it's not converted due to an error
+        try (EasyDocument document = documents.get()) {
+            // the documents already run in parallel, their pages are written on their own thread
+            document.setExecutor(null);
+            renderer.render(spec, document);
+
+            try (SinkOutputStream<S> outputStream = new SinkOutputStream<>(spec, sink)) {
+                return document.convert(outputStream);
+            }
+        }
+    }
+
+    /**
+     * Fills the document of a spec.
+     *
+     * @param <S>
+     *         the type of the spec
+     */
+    @FunctionalInterface
+    public interface Renderer<S> {
+
+        /**
+         * @param spec
+         *         the spec of the document
+         * @param document
+         *         the empty document to fill, it's converted afterward
+         */
+        void render(S spec, EasyDocument document) throws IOException;
+    }
+
+    /**
+     * Receives the generated documents, the methods are called concurrently.
+     *
+     * @param <S>
+     *         the type of the spec
+     */
+    public interface Sink<S> {
+
+        /**
+         * Opens the stream of the document, only for documents having pages. The stream is closed after the document
+         * is written.
+         *
+         * @param spec
+         *         the spec of the document
+         * @return the stream to write the document into
+         */
+        OutputStream open(S spec) throws IOException;
+
+        /**
+         * Called when the document of the spec could not be generated or written.
+         *
+         * @param spec
+         *         the spec of the document
+         * @param exception
+         *         the cause
+         */
+        default void failed(S spec, Exception exception) { }
+    }
+
+    /**
+     * @param generated
+     *         the number of documents written into the sink
+     * @param empty
+     *         the number of documents without pages, which were not written
+     * @param failed
+     *         the number of failed documents
+     */
+    public record Result(long generated, long empty, long failed) { }
+
+    /** Opens the stream of the sink with the first byte written, so empty documents never open one. */
+    private static final class SinkOutputStream<S> extends OutputStream {
+
+        private final S spec;
+        private final Sink<S> sink;
+        private OutputStream outputStream;
+
+        private SinkOutputStream(S spec, Sink<S> sink) {
+            this.spec = spec;
+            this.sink = sink;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            outputStream().write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int offset, int length) throws IOException {
+            outputStream().write(b, offset, length);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (outputStream != null) {
+                outputStream.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (outputStream != null) {
+                outputStream.close();
+            }
+        }
+
+        private OutputStream outputStream() throws IOException {
+            if (outputStream == null) {
+                outputStream = sink.open(spec);
+            }
+
+            return outputStream;
+        }
+    }
+}
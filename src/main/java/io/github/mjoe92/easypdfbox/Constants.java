@@ -9,6 +9,7 @@ public final class Constants {
     static final String COLON_SPACE = ": ";
     static final String NEW_LINE = "\n";
     static final String TAB = "\t";
+    static final String TAB_AS_SPACES = " ".repeat(LineBreaker.TAB_SIZE);
 
     private Constants() { }
 }
@@ -0,0 +1,50 @@
+package io.github.mjoe92.easypdfbox;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/** SHA-256 hashes identifying content, e.g. the PDF documents to insert and their streams. */
+final class ContentHash {
+
+    private ContentHash() { }
+
+    /** @return the hex SHA-256 hash of the data */
+    static String of(byte[] data) {
+        return HexFormat.of().formatHex(sha256().digest(data));
+    }
+
+    /** @return the hex SHA-256 hash of the file, read as a stream */
+    static String of(Path path) throws IOException {
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            return of(inputStream, sha256());
+        }
+    }
+
+    /**
+     * Reads the stream fully into the digest, which may already contain other data.
+     *
+     * @return the hex hash of the digest
+     */
+    static String of(InputStream inputStream, MessageDigest digest) throws IOException {
+        try (InputStream digestInputStream = new DigestInputStream(inputStream, digest)) {
+            digestInputStream.transferTo(OutputStream.nullOutputStream());
+        }
+
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available!", e);
+        }
+    }
+}
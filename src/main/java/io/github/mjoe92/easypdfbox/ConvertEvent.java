@@ -0,0 +1,41 @@
+package io.github.mjoe92.easypdfbox;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Flight Recorder event of converting an {@link EasyDocument}, see {@link Instrumentation.Summary}. */
+@Name("io.github.mjoe92.easypdfbox.Convert")
+@Label("PDF Conversion")
+@Category("Easy PDFBox")
+@Description("Converting a document, from laying out the remaining text to saving it")
+@StackTrace(false)
+final class ConvertEvent extends jdk.jfr.Event {
+
+    @Label("Pages")
+    int pages;
+
+    @Label("Lines")
+    int lines;
+
+    @Label("Glyphs")
+    long glyphs;
+
+    @Label("Content Size")
+    @DataAmount
+    long contentBytes;
+
+    @Label("Merged Pages")
+    int mergedPages;
+
+    @Label("Output Size")
+    @DataAmount
+    long outputBytes;
+
+    @Label("Allocated")
+    @DataAmount
+    long allocatedBytes;
+}
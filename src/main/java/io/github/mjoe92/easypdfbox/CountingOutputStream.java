@@ -0,0 +1,32 @@
+package io.github.mjoe92.easypdfbox;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/** Counts the bytes written into the underlying stream. */
+final class CountingOutputStream extends FilterOutputStream {
+
+    private long count;
+
+    CountingOutputStream(OutputStream outputStream) {
+        super(outputStream);
+    }
+
+    /** @return the number of bytes written */
+    long count() {
+        return count;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        count++;
+    }
+
+    @Override
+    public void write(byte[] b, int offset, int length) throws IOException {
+        out.write(b, offset, length);
+        count += length;
+    }
+}
@@ -1,19 +1,17 @@
 package io.github.mjoe92.easypdfbox;
 
-import java.util.Collection;
-
 /**
  * The buffer object for writing document text.
  *
  * @param text
  * @param xStart
  * @param type
- * @param fontFragments
+ * @param fontFragment
  */
-public record DocText(String text, float xStart, TextType type, Collection<FontFragment> fontFragments) {
+record DocText(String text, float xStart, TextType type, FontFragment fontFragment) {
 
     /** For empty-text related semantic operations */
-    public static DocText of(TextType type) {
+    static DocText of(TextType type) {
         return new DocText(null, 0, type, null);
     }
 }
@@ -0,0 +1,110 @@
+package io.github.mjoe92.easypdfbox;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
+
+/**
+ * A {@link RegisteredFont} used in one document: the lightweight {@link PDType0Font} wrapper embedding the font and
+ * the code points and substituted glyphs written with it, which make up the subset embedded when saving. The wrapper is only created when
+ * the font is first referenced by a content, so an unused font is neither parsed nor embedded.
+ */
+final class DocumentFont {
+
+    private final RegisteredFont registeredFont;
+    private final PDDocument document;
+    private final BitSet usedCodePoints;
+    private final BitSet usedGlyphIds;
+    private PDType0Font font;
+    private long loadNanos;
+    private long loadAllocatedBytes;
+
+    DocumentFont(RegisteredFont registeredFont, PDDocument document) {
+        this.registeredFont = registeredFont;
+        this.document = document;
+        usedCodePoints = new BitSet(256);
+        usedGlyphIds = new BitSet();
+    }
+
+    RegisteredFont registeredFont() {
+        return registeredFont;
+    }
+
+    /** @return the font embedded into the document, loaded on first use, this must be called on the owning thread */
+    PDType0Font font() throws IOException {
+        if (font == null) {
+            long start = System.nanoTime();
+            long startBytes = ThreadAllocation.allocatedBytes();
+            font = registeredFont.load(document);
+            loadNanos = System.nanoTime() - start;
+            loadAllocatedBytes = ThreadAllocation.allocatedBytes() - startBytes;
+        }
+
+        return font;
+    }
+
+    /** @return the time spent loading the font, 0 if it's not loaded */
+    long loadNanos() {
+        return loadNanos;
+    }
+
+    /** @return the bytes allocated loading the font, 0 if it's not loaded */
+    long loadAllocatedBytes() {
+        return loadAllocatedBytes;
+    }
+
+    GlyphWidths widths() {
+        return registeredFont.getWidths();
+    }
+
+    /** @return the glyph substitutions applied when writing text, this may be called on any thread */
+    GlyphSubstitution substitution() throws IOException {
+        return registeredFont.getGlyphSubstitution();
+    }
+
+    /** @return <code>true</code>, whether the font is loaded, so it's part of the document and must be subset */
+    boolean isLoaded() {
+        return font != null;
+    }
+
+    /**
+     * Marks the glyphs to be embedded into the subset of the font.
+     *
+     * @param codePoints
+     *         the code points written, mapped by the cmap
+     * @param glyphIds
+     *         the glyphs written in place of code points, e.g. ligatures
+     */
+    void markUsed(BitSet codePoints, BitSet glyphIds) {
+        usedCodePoints.or(codePoints);
+        usedGlyphIds.or(glyphIds);
+    }
+
+    /**
+     * Embeds the subset of the glyphs written with the font, this must be done once before saving the document. Only
+     * {@link org.apache.pdfbox.pdmodel.PDPageContentStream} registers the fonts to subset when saving, so the fonts
+     * written with the {@link PageContentWriter} must be subset explicitly.
+     */
+    void subset() throws IOException {
+        if (!isLoaded()) {
+            // never referenced by any content, so it's not part of the saved document
+            return;
+        }
+
+        for (int codePoint = usedCodePoints.nextSetBit(0); codePoint >= 0; codePoint = usedCodePoints.nextSetBit(codePoint + 1)) {
+            font.addToSubset(codePoint);
+        }
+
+        if (!usedGlyphIds.isEmpty()) {
+            Set<Integer> glyphIds = new HashSet<>();
+            usedGlyphIds.stream().forEach(glyphIds::add);
+            font.addGlyphsToSubset(glyphIds);
+        }
+
+        font.subset();
+    }
+}
@@ -0,0 +1,35 @@
+package io.github.mjoe92.easypdfbox;
+
+import java.util.List;
+
+/**
+ * The result of {@link EasyDocument#measure()}: the number of pages the document will have and where its lines are
+ * placed, calculated without creating the PDF.
+ *
+ * @param pageCount
+ *         the number of pages, including the inserted ones
+ * @param lines
+ *         the lines of the text in the order of the document
+ */
+public record DocumentMeasure(int pageCount, List<Line> lines) {
+
+    public DocumentMeasure {
+        lines = List.copyOf(lines);
+    }
+
+    /**
+     * A wrapped line of the text.
+     *
+     * @param text
+     *         the text of the line
+     * @param type
+     *         the text type
+     * @param pageNumber
+     *         the number of the page of the line, starting with 1
+     * @param x
+     *         the x position of the line start
+     * @param y
+     *         the y position of the baseline
+     */
+    public record Line(String text, TextType type, int pageNumber, float x, float y) { }
+}
@@ -0,0 +1,78 @@
+package io.github.mjoe92.easypdfbox;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.apache.pdfbox.cos.COSDictionary;
+
+/**
+ * Immutable snapshot of a configured {@link EasyDocument}, created with {@link EasyDocument#toTemplate()}: the
+ * margins, fonts, header, footer, document information, settings and the already wrapped text. Every document
+ * created from the template starts with this state: the text is shared, not copied, and never measured or wrapped
+ * again. The documents share the {@link WrapCache} of the template, so their repeated strings aren't measured again
+ * either, and its {@link InsertCache}, so their inserted pages aren't parsed again. The template can be used concurrently.
+ */
+public final class DocumentTemplate {
+
+    final float marginTop;
+    final float marginRight;
+    final float marginBottom;
+    final float marginLeft;
+    final String normalFontName;
+    final String boldFontName;
+    final MemoryBudget memoryBudget;
+
+    final List<DocText> header;
+    final List<DocText> footer;
+    /** The document information, null if not set. */
+    final COSDictionary information;
+    final LineColumns texts;
+    final List<PageSource> pageSources;
+    final float bufferedHeight;
+
+    final boolean kerning;
+    final boolean headerAndFooterPerPage;
+    final int pageWindow;
+    final Executor executor;
+    final String pageNumberLabel;
+    final String totalPagesLabel;
+    final WrapCache wrapCache;
+    final InsertCache insertCache;
+    final SaveProfile saveProfile;
+    final Instrumentation instrumentation;
+
+    DocumentTemplate(float marginTop, float marginRight, float marginBottom, float marginLeft, String normalFontName, String boldFontName,
+            MemoryBudget memoryBudget, List<DocText> header, List<DocText> footer, COSDictionary information, LineColumns texts,
+            List<PageSource> pageSources, float bufferedHeight, boolean kerning, boolean headerAndFooterPerPage, int pageWindow,
+            Executor executor, String pageNumberLabel, String totalPagesLabel, WrapCache wrapCache,
+            InsertCache insertCache, SaveProfile saveProfile, Instrumentation instrumentation) {
+        this.marginTop = marginTop;
+        this.marginRight = marginRight;
+        this.marginBottom = marginBottom;
+        this.marginLeft = marginLeft;
+        this.normalFontName = normalFontName;
+        this.boldFontName = boldFontName;
+        this.memoryBudget = memoryBudget;
+        this.header = List.copyOf(header);
+        this.footer = List.copyOf(footer);
+        this.information = information;
+        this.texts = texts;
+        this.pageSources = List.copyOf(pageSources);
+        this.bufferedHeight = bufferedHeight;
+        this.kerning = kerning;
+        this.headerAndFooterPerPage = headerAndFooterPerPage;
+        this.pageWindow = pageWindow;
+        this.executor = executor;
+        this.pageNumberLabel = pageNumberLabel;
+        this.totalPagesLabel = totalPagesLabel;
+        this.wrapCache = wrapCache;
+        this.insertCache = insertCache;
+        this.saveProfile = saveProfile;
+        this.instrumentation = instrumentation;
+    }
+
+    /** @return a new document starting with the state of the template, ready to add further text */
+    public EasyDocument newDocument() {
+        return new EasyDocument(this);
+    }
+}
@@ -1,62 +1,150 @@
 package io.github.mjoe92.easypdfbox;
 
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
 import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
-import java.util.LinkedList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
-import java.util.concurrent.ConcurrentHashMap;
-
-import org.apache.pdfbox.Loader;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import jdk.jfr.EventType;
+
+import io.github.mjoe92.easypdfbox.Instrumentation.Phase;
+
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.io.RandomAccessStreamCache;
 import org.apache.pdfbox.multipdf.PDFMergerUtility;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDDocumentInformation;
 import org.apache.pdfbox.pdmodel.PDPage;
-import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.PDResources;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
-import org.apache.pdfbox.pdmodel.font.PDType0Font;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
 
 /**
- * The API for easy {@link PDDocument} creation which encapsulates the PDFBox functionalities.
+ * The API for easy {@link PDDocument} creation which encapsulates the PDFBox functionalities. Converting the document
+ * closes it, a document which is not converted, e.g. due to an error, is to be closed.
  */
-public class EasyDocument {
+public class EasyDocument implements Closeable {
 
     private static final PDRectangle PDF_RECT = PDRectangle.A4;
-    private static final DocText NEW_LINE = DocText.of(TextType.NEW_LINE);
-    private static final DocText PAGE_BREAK = DocText.of(TextType.PAGE_BREAK);
-    private static final DocText INSERT_PAGE = DocText.of(TextType.INSERT_PAGE);
-
-    /** Map where a universal width of a char is saved. This can be used to precisely calculate text bounds. */
-    private static final Map<Character, Float> CHAR_WIDTH_MAP = new ConcurrentHashMap<>(128);
+    private static final Phase[] PHASES = Phase.values();
+    /** The start of a phase which is not measured, see {@link #phaseStart()}. */
+    private static final long NOT_MEASURED = Long.MIN_VALUE;
+    private static final EventType PHASE_EVENT = EventType.getEventType(PhaseEvent.class);
+    /** Horizontal space kept free at the right side of every table cell. */
+    private static final float CELL_PADDING = 4;
+    /** Maximum number of pages laid out before their content is written, limits the content held in memory. */
+    private static final int PAGE_BATCH = 64;
+    /** The number of chars of streamed text wrapped at once, see {@link #addParagraph(Reader)}. */
+    private static final int TEXT_WINDOW = 8192;
 
     private final float marginTop;
     private final float marginRight;
     private final float marginBottom;
     private final float marginLeft;
 
-    private final Queue<DocText> textBuffer;
-    private final Queue<byte[]> pageBuffer;
+    private final TextBuffer textBuffer;
+    /** Reused result of {@link #wrapText(String, float, TextType, GlyphWidths)}. */
+    private final LineRanges lineRanges;
+    /** The cache of wrapped text, null to always wrap the text. */
+    private WrapCache wrapCache;
+    /** The cache of parsed documents to insert, null to parse them for every insertion. */
+    private InsertCache insertCache;
+    private SaveProfile saveProfile = SaveProfile.BALANCED;
+
+    private Instrumentation instrumentation = Instrumentation.NONE;
+    /** The time spent in every phase, indexed by the ordinal of the phase. */
+    private final long[] phaseNanos = new long[PHASES.length];
+    /** The bytes allocated in every phase, indexed by the ordinal of the phase. */
+    private final long[] phaseAllocatedBytes = new long[PHASES.length];
+    /** The bytes allocated by the pages written in parallel, which are part of {@link Phase#WRITE_PAGES}. */
+    private long pageTaskAllocatedBytes;
+    private int lineCount;
+    private long glyphCount;
+    private long contentBytes;
+    private int mergedPages;
+    private final Queue<PageSource> pageBuffer;
+    /** The pages inserted so far by the hash of their source, the same source inserted again refers to them. */
+    private final Map<Object, List<PDPage>> insertedPages;
+    /** The hashes of the inserted sources by their key, only hashed for the insert cache. */
+    private final Map<Object, String> sourceHashes;
+    private final StreamDeduplicator streamDeduplicator;
+    private final Queue<TableRows> tableBuffer;
 
     /** Header appears on every site. */
     private final List<DocText> header;
     /** Footers appears on every site. */
     private final List<DocText> footer;
 
+    private final RegisteredFont normalMetrics;
+    private final RegisteredFont boldMetrics;
+    /** The font fragments of the lines in one style, indexed by {@link #styleIndex(boolean, boolean)}. */
+    private final FontFragment[] singleFontFragments;
+    private final MemoryBudget memoryBudget;
+    private final MemoryMetrics memoryMetrics;
+    private final RandomAccessStreamCache.StreamCacheCreateFunction streamCache;
     private final PDDocument document;
-    private final PDType0Font normalFont;
-    private final PDType0Font boldFont;
+    private final DocumentFont normalFont;
+    private final DocumentFont boldFont;
 
-    /** Cursor for the current y position of the document, used to further advance in the document. */
-    private float yCursor;
     /** Current pages to insert immediately, when it's not null. */
-    private byte[] pages;
+    private PageSource pages;
+    /** Current table being laid out, continued on the next page when it's not null. */
+    private TableRows table;
+    /** Reused wrapped lines of the cells of a table row, one per column. */
+    private LineRanges[] cellRanges;
     private PDDocumentInformation information;
+    /** Number of pages to buffer the text for, before laying it out. 0 means the whole text is buffered. */
+    private int pageWindow;
+    /** Sum of the leading of the buffered text, to decide when to lay out the pages exceeding the page window. */
+    private float bufferedHeight;
+    /** Whether the kerning pairs of the fonts are applied when measuring and writing text. */
+    private boolean kerning;
+    /** Whether the header and the footer are written into every page instead of a shared form. */
+    private boolean headerAndFooterPerPage;
+    /** The header and the footer rendered once and painted on every page, created with the first page using it. */
+    private PDFormXObject headerAndFooterForm;
+    /** The label written before the page number, page numbers are written when it's not null. */
+    private String pageNumberLabel;
+    /** The label written between the page number and the total number of pages, which is written when it's not null. */
+    private String totalPagesLabel;
+    /** The total number of pages painted on every page, its content is only written when the document is complete. */
+    private PDFormXObject totalPagesForm;
+    /** Executor writing the content of the laid out pages, null to write it on the calling thread. */
+    private Executor executor;
+    /** The result of the asynchronous conversion, the conversion is aborted once it's done, e.g. cancelled or timed out. */
+    private CompletableFuture<?> conversion;
 
     public EasyDocument(float margin) {
         this(margin, margin);
@@ -67,6 +155,80 @@ public class EasyDocument {
     }
 
     public EasyDocument(float marginTop, float marginRight, float marginBottom, float marginLeft) {
+        this(marginTop, marginRight, marginBottom, marginLeft, FontRegistry.CALIBRI, FontRegistry.CALIBRI_BOLD);
+    }
+
+    /**
+     * @param marginTop
+     *         the top margin
+     * @param marginRight
+     *         the right margin
+     * @param marginBottom
+     *         the bottom margin
+     * @param marginLeft
+     *         the left margin
+     * @param normalFontName
+     *         the name of the regular font in the {@link FontRegistry}
+     * @param boldFontName
+     *         the name of the bold font in the {@link FontRegistry}
+     */
+    public EasyDocument(float marginTop, float marginRight, float marginBottom, float marginLeft, String normalFontName, String boldFontName) {
+        this(marginTop, marginRight, marginBottom, marginLeft, normalFontName, boldFontName, MemoryBudget.mainMemoryOnly());
+    }
+
+    /**
+     * @param marginTop
+     *         the top margin
+     * @param marginRight
+     *         the right margin
+     * @param marginBottom
+     *         the bottom margin
+     * @param marginLeft
+     *         the left margin
+     * @param normalFontName
+     *         the name of the regular font in the {@link FontRegistry}
+     * @param boldFontName
+     *         the name of the bold font in the {@link FontRegistry}
+     * @param memoryBudget
+     *         the memory budget of the generated and of the inserted documents
+     */
+    public EasyDocument(float marginTop, float marginRight, float marginBottom, float marginLeft, String normalFontName, String boldFontName,
+            MemoryBudget memoryBudget) {
+        this(marginTop, marginRight, marginBottom, marginLeft, normalFontName, boldFontName, memoryBudget, new TextBuffer());
+    }
+
+    /**
+     * Creates a document with the state of the template, see {@link DocumentTemplate#newDocument()}.
+     *
+     * @param template
+     *         the template
+     */
+    EasyDocument(DocumentTemplate template) {
+        this(template.marginTop, template.marginRight, template.marginBottom, template.marginLeft, template.normalFontName, template.boldFontName,
+                template.memoryBudget, new TextBuffer(template.texts));
+
+        header.addAll(template.header);
+        footer.addAll(template.footer);
+        pageBuffer.addAll(template.pageSources);
+        bufferedHeight = template.bufferedHeight;
+        if (template.information != null) {
+            information = new PDDocumentInformation(new COSDictionary(template.information));
+        }
+
+        kerning = template.kerning;
+        headerAndFooterPerPage = template.headerAndFooterPerPage;
+        pageWindow = template.pageWindow;
+        executor = template.executor;
+        pageNumberLabel = template.pageNumberLabel;
+        totalPagesLabel = template.totalPagesLabel;
+        wrapCache = template.wrapCache;
+        insertCache = template.insertCache;
+        saveProfile = template.saveProfile;
+        instrumentation = template.instrumentation;
+    }
+
+    private EasyDocument(float marginTop, float marginRight, float marginBottom, float marginLeft, String normalFontName, String boldFontName,
+            MemoryBudget memoryBudget, TextBuffer textBuffer) {
         this.marginTop = marginTop;
         this.marginRight = marginRight;
         this.marginBottom = marginBottom;
@@ -74,17 +236,34 @@ public class EasyDocument {
 
         header = new ArrayList<>(8);
         footer = new ArrayList<>(8);
-        textBuffer = new LinkedList<>();
-        pageBuffer = new LinkedList<>();
-
-        document = new PDDocument();
-        try (InputStream normalFontStream = getClass().getResourceAsStream("calibri.ttf");
-                InputStream boldFontStream = getClass().getResourceAsStream("calibri-bold.ttf")) {
-            normalFont = PDType0Font.load(document, normalFontStream);
-            boldFont = PDType0Font.load(document, boldFontStream);
-        } catch (IOException e) {
-            throw new UncheckedIOException("Could not load font", e);
-        }
+        this.textBuffer = textBuffer;
+        this.memoryBudget = memoryBudget;
+        pageBuffer = new ArrayDeque<>();
+        insertedPages = new HashMap<>();
+        sourceHashes = new HashMap<>();
+        streamDeduplicator = new StreamDeduplicator();
+        tableBuffer = new ArrayDeque<>();
+        cellRanges = new LineRanges[0];
+        lineRanges = new LineRanges();
+
+        executor = ForkJoinPool.commonPool();
+        // once per document, the instrumentation is only set later
+        long start = System.nanoTime();
+        long startBytes = ThreadAllocation.allocatedBytes();
+        normalMetrics = FontRegistry.get(normalFontName);
+        boldMetrics = FontRegistry.get(boldFontName);
+        singleFontFragments = new FontFragment[] {
+                new FontFragment(0, normalMetrics, false), new FontFragment(0, normalMetrics, true),
+                new FontFragment(0, boldMetrics, false), new FontFragment(0, boldMetrics, true) };
+
+        memoryMetrics = new MemoryMetrics();
+        streamCache = memoryBudget.toStreamCache(memoryMetrics);
+        document = new PDDocument(streamCache);
+        // the fonts are only loaded into the document once the content of a page refers to them
+        normalFont = new DocumentFont(normalMetrics, document);
+        boldFont = new DocumentFont(boldMetrics, document);
+        phaseNanos[Phase.FONT_LOAD.ordinal()] = System.nanoTime() - start;
+        phaseAllocatedBytes[Phase.FONT_LOAD.ordinal()] = ThreadAllocation.allocatedBytes() - startBytes;
     }
 
     /**
@@ -115,7 +294,7 @@ public class EasyDocument {
         float xStart = marginLeft + indent;
 
         for (String item : lines.split(Constants.NEW_LINE)) {
-            Collection<FontFragment> fontFragment = createSingleFontFragment(item.length(), bold, underlined);
+            FontFragment fontFragment = createSingleFontFragment(bold, underlined);
             toBuffer(delimiter + item, xStart, TextType.LIST, fontFragment);
         }
     }
@@ -148,7 +327,7 @@ public class EasyDocument {
         float xStart = marginLeft + indent;
 
         for (String item : items) {
-            Collection<FontFragment> fontFragment = createSingleFontFragment(item.length(), bold, underlined);
+            FontFragment fontFragment = createSingleFontFragment(bold, underlined);
             toBuffer(delimiter + item, xStart, TextType.LIST, fontFragment);
         }
     }
@@ -158,15 +337,100 @@ public class EasyDocument {
      *         the pages to add in bytes
      */
     public void addNewPages(byte[] pageData) {
-        pageBuffer.add(pageData);
-        textBuffer.add(INSERT_PAGE);
+        addNewPages(PageSource.of(pageData));
+    }
+
+    /**
+     * The file is only opened and read when the pages are inserted while converting, it's never fully loaded into
+     * memory.
+     *
+     * @param pageFile
+     *         the PDF file of the pages to add
+     */
+    public void addNewPages(Path pageFile) {
+        addNewPages(PageSource.of(pageFile));
+    }
+
+    /**
+     * The stream is only read when the pages are inserted while converting, it's closed afterward.
+     *
+     * @param pageStream
+     *         the PDF stream of the pages to add
+     */
+    public void addNewPages(InputStream pageStream) {
+        addNewPages(PageSource.of(pageStream));
+    }
+
+    /**
+     * The source is only parsed when the pages are inserted while converting, it's closed afterward.
+     *
+     * @param pageSource
+     *         the PDF source of the pages to add, e.g. a memory mapped file
+     */
+    public void addNewPages(RandomAccessRead pageSource) {
+        addNewPages(PageSource.of(pageSource));
+    }
+
+    private void addNewPages(PageSource pageSource) {
+        pageBuffer.add(pageSource);
+        toBuffer(TextType.INSERT_PAGE);
+    }
+
+    /**
+     * Adds a table with fixed column widths, the cells are wrapped within their column. The rows are only pulled
+     * from the iterator when the table is laid out, a page at a time, so the rows are never held in memory at once.
+     * The header row is repeated on every page of the table.
+     *
+     * @param columnWidths
+     *         the widths of the columns, which must fit between the margins
+     * @param header
+     *         the header row written in bold, null for none
+     * @param rows
+     *         the rows, with a cell per column (missing cells are empty)
+     */
+    public void addTable(float[] columnWidths, List<String> header, Iterator<? extends List<String>> rows) {
+        addTable(columnWidths, header, rows, () -> { });
+    }
+
+    /**
+     * Adds a table with fixed column widths, like {@link #addTable(float[], List, Iterator)}. The stream is consumed
+     * when the table is laid out and closed afterward.
+     *
+     * @param columnWidths
+     *         the widths of the columns, which must fit between the margins
+     * @param header
+     *         the header row written in bold, null for none
+     * @param rows
+     *         the rows, with a cell per column (missing cells are empty)
+     */
+    public void addTable(float[] columnWidths, List<String> header, Stream<? extends List<String>> rows) {
+        addTable(columnWidths, header, rows.iterator(), rows::close);
+    }
+
+    private void addTable(float[] columnWidths, List<String> header, Iterator<? extends List<String>> rows, Runnable onClose) {
+        float tableWidth = 0;
+        for (float columnWidth : columnWidths) {
+            if (columnWidth <= CELL_PADDING) {
+                throw new IllegalArgumentException("The column widths must be greater than the cell padding: " + columnWidth);
+            }
+
+            tableWidth += columnWidth;
+        }
+
+        float availableWidth = PDF_RECT.getWidth() - marginLeft - marginRight;
+        if (columnWidths.length == 0 || tableWidth > availableWidth + 0.01f) {
+            throw new IllegalArgumentException("The columns must fit between the margins: " + tableWidth + " > " + availableWidth);
+        }
+
+        tableBuffer.add(new TableRows(columnWidths.clone(), header == null ? null : List.copyOf(header), rows, onClose));
+        toBuffer(TextType.TABLE);
     }
 
     /**
      * Adds a new line.
      */
     public void addNewline() {
-        textBuffer.add(NEW_LINE);
+        toBuffer(TextType.NEW_LINE);
     }
 
     /**
@@ -186,10 +450,94 @@ public class EasyDocument {
      *         <code>true</code>, whether the text is underlined
      */
     public void addParagraph(String text, boolean bold, boolean underlined) {
-        Collection<FontFragment> fontFragment = createSingleFontFragment(text.length(), bold, underlined);
+        FontFragment fontFragment = createSingleFontFragment(bold, underlined);
         toBuffer(text, marginLeft, TextType.PARAGRAPH, fontFragment);
     }
 
+    /**
+     * Adds a paragraph of any length, e.g. a log excerpt or a database CLOB. The text is read and wrapped in windows
+     * of a fixed size and only the wrapped lines are kept, so the whole text is never held in memory. With a
+     * {@link #setPageWindow(int) page window} the lines are laid out into pages while reading.
+     *
+     * @param reader
+     *         the text of the paragraph, read to its end and closed afterward
+     */
+    public void addParagraph(Reader reader) throws IOException {
+        addParagraph(reader, false, false);
+    }
+
+    /**
+     * @param reader
+     *         the text of the paragraph, read to its end and closed afterward
+     * @param bold
+     *         <code>true</code>, whether the text is bold
+     * @param underlined
+     *         <code>true</code>, whether the text is underlined
+     * @see #addParagraph(Reader)
+     */
+    public void addParagraph(Reader reader, boolean bold, boolean underlined) throws IOException {
+        FontFragment fontFragment = createSingleFontFragment(bold, underlined);
+        char[] chunk = new char[TEXT_WINDOW];
+        StringBuilder window = new StringBuilder(2 * TEXT_WINDOW);
+
+        try (reader) {
+            for (int read = reader.read(chunk); read != -1; read = reader.read(chunk)) {
+                window.append(chunk, 0, read);
+                // a window of a single line is extended until the line is complete
+                if (window.length() >= TEXT_WINDOW) {
+                    window.delete(0, toBuffer(window, 0, window.length(), false, marginLeft, TextType.PARAGRAPH, fontFragment));
+                }
+            }
+        }
+
+        toBuffer(window, 0, window.length(), true, marginLeft, TextType.PARAGRAPH, fontFragment);
+    }
+
+    /**
+     * Adds a paragraph of any length, like {@link #addParagraph(Reader)}, without copying the text: it's wrapped in
+     * windows of a fixed size and only the wrapped lines are kept.
+     *
+     * @param text
+     *         the text of the paragraph, e.g. a {@link java.nio.CharBuffer} of a mapped file
+     */
+    public void addParagraph(CharSequence text) {
+        addParagraph(text, false, false);
+    }
+
+    /**
+     * @param text
+     *         the text of the paragraph
+     * @param bold
+     *         <code>true</code>, whether the text is bold
+     * @param underlined
+     *         <code>true</code>, whether the text is underlined
+     * @see #addParagraph(CharSequence)
+     */
+    public void addParagraph(CharSequence text, boolean bold, boolean underlined) {
+        FontFragment fontFragment = createSingleFontFragment(bold, underlined);
+        int from = 0;
+        int window = TEXT_WINDOW;
+        while (text.length() - from > window) {
+            int next = toBuffer(text, from, from + window, false, marginLeft, TextType.PARAGRAPH, fontFragment);
+            // a window of a single line is extended until the line is complete
+            window = next == from ? window * 2 : TEXT_WINDOW;
+            from = next;
+        }
+
+        toBuffer(text, from, text.length(), true, marginLeft, TextType.PARAGRAPH, fontFragment);
+    }
+
+    /**
+     * Adds a paragraph of runs in different styles, e.g. a bold label followed by regular text. The lines break
+     * across the runs, every line is written with the fonts and underlines of the runs it contains.
+     *
+     * @param runs
+     *         the runs of the paragraph
+     */
+    public void addParagraph(List<TextRun> runs) {
+        toBuffer(runs, marginLeft, TextType.PARAGRAPH);
+    }
+
     /**
      * @param text
      *         the text
@@ -207,7 +555,7 @@ public class EasyDocument {
      *         <code>true</code>, whether the text is underlined
      */
     public void addHeading(String text, boolean bold, boolean underlined) {
-        Collection<FontFragment> fontFragment = createSingleFontFragment(text.length(), bold, underlined);
+        FontFragment fontFragment = createSingleFontFragment(bold, underlined);
         toBuffer(text, marginLeft, TextType.HEADING, fontFragment);
     }
 
@@ -228,28 +576,270 @@ public class EasyDocument {
      *         <code>true</code>, whether the text is underlined
      */
     public void addSubHeading(String text, boolean bold, boolean underlined) {
-        Collection<FontFragment> fontFragment = createSingleFontFragment(text.length(), bold, underlined);
+        FontFragment fontFragment = createSingleFontFragment(bold, underlined);
         toBuffer(text, marginLeft, TextType.SUB_HEADING, fontFragment);
     }
 
     /** Inserts a break point for the page. */
     public void addPageBreak() {
-        textBuffer.add(PAGE_BREAK);
+        toBuffer(TextType.PAGE_BREAK);
     }
 
     /** @return the converted data in bytes of the PDF document */
     public byte[] convert(int size) throws IOException {
-        try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream(size);
-                PDDocument pdfDocument = createDocument()) {
-            if (pdfDocument == null) {
+        try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream(size)) {
+            if (!convert(outputStream)) {
                 return null;
             }
-            
-            pdfDocument.save(outputStream);
+
             return outputStream.toByteArray();
         }
     }
 
+    /**
+     * Converts the document on the executor, see {@link #convertAsync(Executor, Duration)}.
+     *
+     * @param executor
+     *         the executor to convert the document on
+     * @return the converted data in bytes of the PDF document, null if the document has no page
+     */
+    public CompletableFuture<byte[]> convertAsync(Executor executor) {
+        return convertAsync(executor, null);
+    }
+
+    /**
+     * Converts the document on the executor. The conversion is aborted when the returned future is cancelled or the
+     * time budget is exceeded, which completes it with a {@link java.util.concurrent.TimeoutException}: the state of
+     * the future is checked between the pages, before pages are inserted and while the document is saved. The
+     * document and the remaining sources of pages and tables are closed either way, releasing their temporary
+     * files. The document must not be used while it's converted.
+     *
+     * @param executor
+     *         the executor to convert the document on
+     * @param timeout
+     *         the time budget of the conversion, including the wait for the executor, null for none
+     * @return the converted data in bytes of the PDF document, null if the document has no page; it fails with the
+     *         {@link RejectedExecutionException} if the executor doesn't accept the conversion
+     */
+    public CompletableFuture<byte[]> convertAsync(Executor executor, Duration timeout) {
+        if (conversion != null) {
+            throw new IllegalStateException("The document is already converted!");
+        }
+
+        CompletableFuture<byte[]> result = new CompletableFuture<>();
+        if (timeout != null) {
+            result.orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        }
+
+        // set before the task is submitted, so it's visible to the task
+        conversion = result;
+        try {
+            executor.execute(() -> {
+                try {
+                    result.complete(convert(8192));
+                } catch (IOException | RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // nothing was converted, the document can be converted again
+            conversion = null;
+            result.completeExceptionally(e);
+        }
+
+        return result;
+    }
+
+    /**
+     * Lays out the remaining text and writes the PDF document directly into the stream, without buffering the
+     * output. The stream is not closed.
+     *
+     * @param outputStream
+     *         the stream to write the PDF document into
+     * @return <code>true</code>, whether the document has any page and it was written
+     */
+    public boolean convert(OutputStream outputStream) throws IOException {
+        try (document) {
+            ConvertEvent event = new ConvertEvent();
+            event.begin();
+            long start = System.nanoTime();
+            long startBytes = ThreadAllocation.allocatedBytes();
+
+            PDDocument pdfDocument = createDocument();
+            if (pdfDocument == null) {
+                return false;
+            }
+
+            CountingOutputStream countingOutputStream = new CountingOutputStream(outputStream);
+            save(pdfDocument, countingOutputStream);
+            report(event, start, startBytes, countingOutputStream.count());
+            return true;
+        } finally {
+            closeSources();
+        }
+    }
+
+    /**
+     * Lays out the remaining text and writes the PDF document directly into the file. The file is neither created
+     * nor truncated when the document has no page.
+     *
+     * @param path
+     *         the file to write the PDF document into
+     * @return <code>true</code>, whether the document has any page and it was written
+     */
+    public boolean convert(Path path) throws IOException {
+        try (document) {
+            ConvertEvent event = new ConvertEvent();
+            event.begin();
+            long start = System.nanoTime();
+            long startBytes = ThreadAllocation.allocatedBytes();
+
+            PDDocument pdfDocument = createDocument();
+            if (pdfDocument == null) {
+                return false;
+            }
+
+            CountingOutputStream countingOutputStream = new CountingOutputStream(Files.newOutputStream(path));
+            try (OutputStream outputStream = new BufferedOutputStream(countingOutputStream)) {
+                save(pdfDocument, outputStream);
+            }
+
+            report(event, start, startBytes, countingOutputStream.count());
+            return true;
+        } finally {
+            closeSources();
+        }
+    }
+
+    /** Releases the PDF document and the sources of the pages and tables not converted, converting closes them anyway. */
+    @Override
+    public void close() throws IOException {
+        try (document) {
+            closeSources();
+        }
+    }
+
+    private void save(PDDocument pdfDocument, OutputStream outputStream) throws IOException {
+        long start = phaseStart();
+        long startBytes = allocationStart(start);
+        pdfDocument.save(conversion == null ? outputStream : new AbortableOutputStream(outputStream, this::checkAborted),
+                saveProfile.compressParameters());
+        phaseEnd(Phase.SAVE, start, startBytes);
+    }
+
+    /** Reports the phases and the counters of the conversion to the instrumentation and the Flight Recorder. */
+    private void report(ConvertEvent event, long start, long startBytes, long outputBytes) {
+        Instrumentation.Summary summary = new Instrumentation.Summary(document.getNumberOfPages(), lineCount, glyphCount, contentBytes, mergedPages,
+                outputBytes, ThreadAllocation.allocatedBytes() - startBytes + pageTaskAllocatedBytes, System.nanoTime() - start);
+
+        for (Phase phase : PHASES) {
+            boolean fontLoad = phase == Phase.FONT_LOAD;
+            long nanos = phaseNanos[phase.ordinal()] + (fontLoad ? fontLoadNanos() : 0);
+            long allocatedBytes = phaseAllocatedBytes[phase.ordinal()] + (fontLoad ? fontLoadAllocatedBytes() : 0);
+            instrumentation.phaseCompleted(phase, nanos, allocatedBytes);
+
+            PhaseEvent phaseEvent = new PhaseEvent();
+            if (phaseEvent.isEnabled()) {
+                phaseEvent.phase = phase.name();
+                phaseEvent.time = nanos;
+                phaseEvent.allocatedBytes = allocatedBytes;
+                phaseEvent.commit();
+            }
+        }
+
+        instrumentation.converted(summary);
+
+        if (event.shouldCommit()) {
+            event.pages = summary.pages();
+            event.lines = summary.lines();
+            event.glyphs = summary.glyphs();
+            event.contentBytes = summary.contentBytes();
+            event.mergedPages = summary.mergedPages();
+            event.outputBytes = summary.outputBytes();
+            event.allocatedBytes = summary.allocatedBytes();
+            event.commit();
+        }
+    }
+
+    /**
+     * Lays out the buffered text like {@link #convert(OutputStream)} would, without creating any page, content or
+     * font: only the page count and the position of every line are calculated. The document is not changed, text
+     * can still be added and it can still be converted. The pages inserted from byte arrays and files are loaded to
+     * count them, the pages inserted from streams can't be measured.
+     *
+     * @return the page count and the positions of the lines not laid out yet (see {@link #setPageWindow(int)})
+     */
+    public DocumentMeasure measure() throws IOException {
+        if (table != null || !tableBuffer.isEmpty()) {
+            throw new IllegalStateException("The rows of a table can't be measured without consuming them!");
+        }
+
+        TextBuffer texts = new TextBuffer(textBuffer.toColumns());
+        Iterator<PageSource> pageSources = pageBuffer.iterator();
+
+        int pageCount = document.getNumberOfPages();
+        List<DocumentMeasure.Line> lines = new ArrayList<>();
+        while (!texts.isEmpty()) {
+            PageLayout pageLayout = layoutPage(texts);
+            if (pageLayout.isPage()) {
+                pageCount++;
+                LineColumns pageLines = pageLayout.lines();
+                for (int line = 0; line < pageLayout.size(); line++) {
+                    lines.add(new DocumentMeasure.Line(pageLines.text(line), pageLines.type(line), pageCount, pageLines.xStart(line), pageLayout.y(line)));
+                }
+            }
+
+            if (pageLayout.insertsPages()) {
+                pageCount += countPages(pageSources.next());
+            }
+        }
+
+        return new DocumentMeasure(pageCount, lines);
+    }
+
+    private int countPages(PageSource pageSource) throws IOException {
+        if (!pageSource.isReusable()) {
+            throw new IllegalStateException("The pages inserted from a stream can't be measured without consuming it!");
+        }
+
+        try (PDDocument pages = pageSource.load(streamCache)) {
+            return pages.getNumberOfPages();
+        }
+    }
+
+    /**
+     * Captures the current state as an immutable template: the settings, the header, the footer, the document
+     * information and the added text, which is already wrapped. The documents created from the template start with
+     * this state and don't measure or wrap the text again. This document remains usable.
+     *
+     * @return the template
+     */
+    public DocumentTemplate toTemplate() {
+        if (document.getNumberOfPages() > 0 || pages != null) {
+            throw new IllegalStateException("A template can't be created after pages were laid out, set the page window afterward!");
+        }
+
+        if (!tableBuffer.isEmpty()) {
+            throw new IllegalStateException("A template can't contain tables, their rows can only be consumed once!");
+        }
+
+        for (PageSource pageSource : pageBuffer) {
+            if (!pageSource.isReusable()) {
+                throw new IllegalStateException("A template can only insert pages from byte arrays or files!");
+            }
+        }
+
+        COSDictionary informationCopy = information == null ? null : new COSDictionary(information.getCOSObject());
+        return new DocumentTemplate(marginTop, marginRight, marginBottom, marginLeft, normalMetrics.getName(), boldMetrics.getName(), memoryBudget,
+                header, footer, informationCopy, textBuffer.toColumns(), List.copyOf(pageBuffer), bufferedHeight, kerning, headerAndFooterPerPage,
+                pageWindow, executor, pageNumberLabel, totalPagesLabel, wrapCache, insertCache, saveProfile, instrumentation);
+    }
+
+    /** @return the stream cache usage of the generated and of the inserted documents so far, all zero unless the {@link MemoryBudget} is metered */
+    public MemoryMetrics getMemoryMetrics() {
+        return memoryMetrics;
+    }
+
     /**
      * Sets the {@link PDDocumentInformation} properties for the PDF.
      *
@@ -298,6 +888,135 @@ public class EasyDocument {
         information.setTrapped(trappedStr);
     }
 
+    /**
+     * Limits the text held in memory: as soon as more text is buffered than what fits on the given number of pages,
+     * the surplus is laid out into pages immediately instead of at {@link #convert(OutputStream)}. The header and
+     * the footer must be set before adding the text, since they are written when a page is laid out.
+     *
+     * @param pageWindow
+     *         the number of pages to buffer the text for, 0 (default) to buffer the whole text until converting
+     */
+    public void setPageWindow(int pageWindow) {
+        if (pageWindow < 0) {
+            throw new IllegalArgumentException("The page window must not be negative: " + pageWindow);
+        }
+
+        this.pageWindow = pageWindow;
+        flushPages();
+    }
+
+    /**
+     * Enables the kerning pairs of the fonts (where available). Set it before adding any text, so measuring and
+     * writing the text agree.
+     *
+     * @param kerning
+     *         <code>true</code>, whether kerning is applied
+     */
+    public void setKerning(boolean kerning) {
+        this.kerning = kerning;
+    }
+
+    /**
+     * The pages are laid out on the calling thread, then the content of the laid out pages is written in parallel
+     * and the pages are added in order. By default the content is written on the common fork-join pool.
+     *
+     * @param executor
+     *         the executor writing the content of the pages, null to write it on the calling thread
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Takes the lines of repeated strings from the cache instead of measuring and wrapping them again. The cache can
+     * be shared by any number of documents.
+     *
+     * @param wrapCache
+     *         the cache of wrapped text, null (default) to always wrap the text
+     */
+    public void setWrapCache(WrapCache wrapCache) {
+        this.wrapCache = wrapCache;
+    }
+
+    /**
+     * Takes the parsed documents of the pages inserted from byte arrays and files from the cache instead of parsing
+     * them again. The cache can be shared by any number of documents.
+     *
+     * @param insertCache
+     *         the cache of parsed documents to insert, null (default) to always parse them
+     */
+    public void setInsertCache(InsertCache insertCache) {
+        this.insertCache = insertCache;
+    }
+
+    /**
+     * Reports the time of every phase and the counters of the conversion, e.g. to a metrics pipeline. The time of
+     * loading the fonts and of wrapping the text is included, although it's spent before converting.
+     *
+     * @param instrumentation
+     *         the instrumentation, {@link Instrumentation#NONE} by default
+     */
+    public void setInstrumentation(Instrumentation instrumentation) {
+        if (instrumentation == null) {
+            throw new IllegalArgumentException("The instrumentation must not be null, use Instrumentation.NONE instead!");
+        }
+
+        this.instrumentation = instrumentation;
+    }
+
+    /**
+     * Chooses between the size of the saved document and the time to save it, see {@link SaveProfile}. Set it before
+     * adding the text, since the content of the pages may be compressed as soon as they are laid out.
+     *
+     * @param saveProfile
+     *         the save profile, {@link SaveProfile#BALANCED} by default
+     */
+    public void setSaveProfile(SaveProfile saveProfile) {
+        if (saveProfile == null) {
+            throw new IllegalArgumentException("The save profile must not be null!");
+        }
+
+        this.saveProfile = saveProfile;
+    }
+
+    /**
+     * By default the header and the footer are rendered once into a form, which every page paints. Writing them into
+     * every page instead is only needed for content differing per page.
+     *
+     * @param headerAndFooterPerPage
+     *         <code>true</code>, whether the header and the footer are written into the content of every page
+     */
+    public void setHeaderAndFooterPerPage(boolean headerAndFooterPerPage) {
+        this.headerAndFooterPerPage = headerAndFooterPerPage;
+    }
+
+    /**
+     * Writes the page number at the bottom right of every laid out page, e.g. "Page 3". Inserted pages are counted,
+     * but not numbered. Set it before adding the text, since the number is written when a page is laid out.
+     *
+     * @param pageNumberLabel
+     *         the label before the page number, null to disable page numbers
+     */
+    public void setPageNumbers(String pageNumberLabel) {
+        setPageNumbers(pageNumberLabel, null);
+    }
+
+    /**
+     * Writes the page number and the total number of pages at the bottom right of every laid out page, e.g. "Page 3
+     * of 12". The total is painted from a form, which is written after the last page, so the document is still laid
+     * out once. Inserted pages are counted, but not numbered. Set it before adding the text, since the number is
+     * written when a page is laid out.
+     *
+     * @param pageNumberLabel
+     *         the label before the page number, null to disable page numbers
+     * @param totalPagesLabel
+     *         the label between the page number and the total number of pages, null to omit the total
+     */
+    public void setPageNumbers(String pageNumberLabel, String totalPagesLabel) {
+        this.pageNumberLabel = pageNumberLabel;
+        this.totalPagesLabel = totalPagesLabel;
+    }
+
     /**
      * @param text
      *         the footer text to set
@@ -316,10 +1035,12 @@ public class EasyDocument {
      */
     public void setFooter(String text, boolean bold, boolean underlined) {
         footer.clear();
+        headerAndFooterForm = null;
 
-        Collection<String> wrappedText = wrapText(text, marginLeft, TextType.FOOTER);
-        for (String line : wrappedText) {
-            Collection<FontFragment> fontFragment = createSingleFontFragment(line.length(), bold, underlined);
+        LineRanges wrappedText = wrapText(text, marginLeft, TextType.FOOTER, widthsOf(bold));
+        for (int index = 0; index < wrappedText.size(); index++) {
+            String line = lineOf(text, wrappedText.start(index), wrappedText.end(index));
+            FontFragment fontFragment = createSingleFontFragment(bold, underlined);
             DocText docText = new DocText(line, marginLeft, TextType.FOOTER, fontFragment);
             footer.add(docText);
         }
@@ -335,10 +1056,12 @@ public class EasyDocument {
      */
     public void setHeader(String text, boolean bold, boolean underlined) {
         header.clear();
+        headerAndFooterForm = null;
 
-        Collection<String> wrappedText = wrapText(text, marginLeft, TextType.HEADER);
-        for (String line : wrappedText) {
-            Collection<FontFragment> fontFragment = createSingleFontFragment(line.length(), bold, underlined);
+        LineRanges wrappedText = wrapText(text, marginLeft, TextType.HEADER, widthsOf(bold));
+        for (int index = 0; index < wrappedText.size(); index++) {
+            String line = lineOf(text, wrappedText.start(index), wrappedText.end(index));
+            FontFragment fontFragment = createSingleFontFragment(bold, underlined);
             DocText docText = new DocText(line, marginLeft, TextType.HEADER, fontFragment);
             header.add(docText);
         }
@@ -351,46 +1074,93 @@ public class EasyDocument {
      *         the text to set as value
      */
     public void addUnderlinedTitleColonValue(String title, String text) {
-        String line = title + Constants.COLON_SPACE + text;
-        FontFragment titleFont = new FontFragment(title.length(), normalFont, true);
-        FontFragment textFont = new FontFragment(line.length() - title.length(), normalFont, false);
-
-        toBuffer(line, marginLeft, TextType.PARAGRAPH, List.of(titleFont, textFont));
+        addParagraph(List.of(new TextRun(title, false, true), TextRun.of(Constants.COLON_SPACE + text)));
     }
 
-    private void appendLine(PDPageContentStream contentStream, DocText docText) throws IOException {
-        contentStream.beginText();
-        // for now, we assume the font set for a text line
-        PDType0Font font = docText.fontFragments().iterator().next().font();
-        contentStream.setFont(font, docText.type().getFontSize());
-        contentStream.newLineAtOffset(docText.xStart(), yCursor);
+    private void appendLine(PageContentWriter contentWriter, DocText docText, float y) throws IOException {
         String text = docText.text();
+        FontFragment fontFragment = docText.fontFragment();
+        appendFragment(contentWriter, text, 0, text.length(), docText.xStart(), y, docText.type().getFontSize(), fontFragment.font(),
+                fontFragment.underlined(), Float.NaN, true);
+    }
 
-        try {
-            contentStream.showText(text);
-        } finally {
-            contentStream.endText();
+    /**
+     * Writes the fragments of the line one after another, switching the fonts, and adds the underlines of the
+     * underlined fragments. The fragments are positioned by their advance measured when they were wrapped, a single
+     * fragment takes the width of the line.
+     *
+     * @param contentWriter
+     *         the writer of the content
+     * @param lines
+     *         the lines of the page
+     * @param line
+     *         the index of the line
+     * @param y
+     *         the y position of the baseline
+     */
+    private void appendLine(PageContentWriter contentWriter, LineColumns lines, int line, float y) throws IOException {
+        float fontSize = lines.type(line).getFontSize();
+        CharSequence text = lines.chars(line);
+        int lineEnd = lines.end(line);
+        int start = lines.start(line);
+        float x = lines.xStart(line);
+
+        int firstFragment = lines.firstFragment(line);
+        int fragmentEnd = lines.fragmentEnd(line);
+        for (int fragment = firstFragment; fragment < fragmentEnd; fragment++) {
+            boolean last = fragment == fragmentEnd - 1;
+            int end = last ? lineEnd : Math.min(start + lines.fragmentLength(fragment), lineEnd);
+            float advance = lines.fragmentAdvance(fragment);
+            if (Float.isNaN(advance) && fragment == firstFragment && last) {
+                advance = lines.width(line);
+            }
+            x += appendFragment(contentWriter, text, start, end, x, y, fontSize, lines.fragmentFont(fragment), lines.fragmentUnderlined(fragment), advance,
+                    last);
+            start = end;
         }
     }
 
-    private PDDocument createDocument() throws IOException {
-        PDFMergerUtility merger = new PDFMergerUtility();
+    /**
+     * Writes a fragment of a line and its underline.
+     *
+     * @param advance
+     *         the measured width of the fragment, NaN to measure it if needed
+     * @param last
+     *         <code>true</code>, whether it's the last fragment of the line, which isn't measured unless it's underlined
+     * @return the width of the fragment, 0 if it isn't needed
+     */
+    private float appendFragment(PageContentWriter contentWriter, CharSequence text, int start, int end, float x, float y, float fontSize,
+            RegisteredFont font, boolean underlined, float advance, boolean last) throws IOException {
+        contentWriter.showText(documentFontOf(font), fontSize, x, y, text, start, end);
+        if (!underlined && last) {
+            return 0;
+        }
 
-        do {
-            if (pages == null) {
-                PDPage page = createPage(document);
-                if (page != null) {
-                    document.addPage(page);
-                }
-            } else {
-                try (PDDocument toAppend = Loader.loadPDF(pages)) {
-                    merger.appendDocument(document, toAppend);
-                }
+        if (Float.isNaN(advance)) {
+            advance = widthOf(text, start, end, widthsOf(font), fontSize);
+        }
 
-                pages = null;
-            }
-        } while (!textBuffer.isEmpty() || pages != null);
+        if (underlined) {
+            float underlineWidth = fontSize / TextType.HEADING.getFontSize();
+            contentWriter.underline(x, x + advance, y - 2 * underlineWidth, underlineWidth);
+        }
+
+        return advance;
+    }
+
+    /** Aborts the asynchronous conversion once its result is done, e.g. cancelled or timed out. */
+    private void checkAborted() {
+        if (conversion != null && conversion.isDone()) {
+            throw new CancellationException("The conversion was aborted!");
+        }
+    }
+
+    private PDDocument createDocument() throws IOException {
+        do {
+            layoutNextPages(() -> true);
+        } while (!textBuffer.isEmpty() || pages != null || table != null);
 
+        bufferedHeight = 0;
         if (document.getNumberOfPages() == 0) {
             return null;
         }
@@ -399,92 +1169,545 @@ public class EasyDocument {
             document.setDocumentInformation(information);
         }
 
+        writeTotalPages();
+
+        long start = phaseStart();
+        long startBytes = allocationStart(start);
+        subsetFonts();
+        phaseEnd(Phase.SUBSET, start, startBytes);
+
         return document;
     }
 
-    private PDPage createPage(PDDocument document) throws IOException {
-        yCursor = PDF_RECT.getHeight();
-
-        PDPage page = new PDPage(PDF_RECT);
-        try (PDPageContentStream contentStream = new PDPageContentStream(document, page)) {
+    /**
+     * Lays out the next pages of the text while the condition holds, at most a batch or until pages are to be
+     * inserted, and adds them. Or inserts the pages queued by {@link #layoutPage(TextBuffer)}.
+     *
+     * @param hasMore
+     *         whether further pages are to be laid out in this batch
+     */
+    private void layoutNextPages(BooleanSupplier hasMore) throws IOException {
+        long start = phaseStart();
+        long startBytes = allocationStart(start);
+        if (pages == null) {
+            List<PageLayout> pageLayouts = new ArrayList<>();
             do {
-                DocText docText = textBuffer.poll();
-                if (docText == null) {
-                    return null;
+                checkAborted();
+                PageLayout pageLayout = layoutPage(textBuffer);
+                bufferedHeight -= pageLayout.consumedHeight();
+                if (pageLayout.insertsPages()) {
+                    pages = pageBuffer.poll();
                 }
-                
-                switch (docText.type()) {
-                    case PAGE_BREAK -> yCursor = 0;
-                    case NEW_LINE -> yCursor -= docText.type().getLeading();
-                    case INSERT_PAGE -> {
-                        pages = pageBuffer.poll();
-                        // corner case: the insertable pages must be added directly without blank pages in between
-                        if (yCursor == PDF_RECT.getHeight()) {
-                            return null;
-                        } else {
-                            yCursor = 0;
-                        }
-                    }
-                    default -> {
-                        appendLine(contentStream, docText);
-                        drawLine(contentStream, docText);
 
-                        yCursor -= docText.type().getLeading();
+                if (pageLayout.isPage()) {
+                    pageLayouts.add(pageLayout);
+                }
+            } while (pages == null && pageLayouts.size() < PAGE_BATCH && (!textBuffer.isEmpty() || table != null) && hasMore.getAsBoolean());
+
+            phaseEnd(Phase.LAYOUT, start, startBytes);
+
+            long writeStart = phaseStart();
+            long writeStartBytes = allocationStart(writeStart);
+            long fontLoadNanos = fontLoadNanos();
+            long fontLoadBytes = fontLoadAllocatedBytes();
+            addPages(pageLayouts, writeStart != NOT_MEASURED);
+            if (writeStart != NOT_MEASURED) {
+                // the fonts are loaded on first use while adding the pages, which is reported as font loading
+                phaseEnd(Phase.WRITE_PAGES, writeStart + fontLoadNanos() - fontLoadNanos, writeStartBytes + fontLoadAllocatedBytes() - fontLoadBytes);
+            }
+        } else {
+            checkAborted();
+            insertPages(pages);
+            pages = null;
+            phaseEnd(Phase.MERGE, start, startBytes);
+        }
+    }
+
+    /**
+     * Appends the pages of the source to the document. The pages of a source inserted before refer to the same
+     * resources and content, which are stored only once. Otherwise the streams of the appended pages are replaced
+     * with equal streams appended before, e.g. the same fonts and images of different letterheads.
+     *
+     * @param pageSource
+     *         the source of the pages
+     */
+    private void insertPages(PageSource pageSource) throws IOException {
+        Object sourceKey = pageSource.isReusable() ? pageSource.key() : null;
+        String contentHash = sourceKey == null || insertCache == null ? null : contentHashOf(pageSource, sourceKey);
+        // the equal content of other sources is only found by its hash, otherwise the same source is found by its key
+        Object pagesKey = contentHash == null ? sourceKey : contentHash;
+        List<PDPage> inserted = pagesKey == null ? null : insertedPages.get(pagesKey);
+        if (inserted != null) {
+            try (pageSource) {
+                for (PDPage page : inserted) {
+                    // a shallow copy of the page dictionary, it's another page with the same content
+                    COSDictionary copy = new COSDictionary(page.getCOSObject());
+                    copy.removeItem(COSName.PARENT);
+                    document.addPage(new PDPage(copy));
+                }
+            }
+
+            mergedPages += inserted.size();
+            return;
+        }
+
+        int firstPage = document.getNumberOfPages();
+        PDFMergerUtility merger = new PDFMergerUtility();
+        if (contentHash != null && insertCache != null) {
+            try (pageSource) {
+                insertCache.append(merger, document, pageSource, contentHash, streamCache);
+            }
+        } else {
+            try (PDDocument toAppend = pageSource.load(streamCache)) {
+                merger.appendDocument(document, toAppend);
+            }
+        }
+
+        List<PDPage> appended = new ArrayList<>();
+        boolean shareable = true;
+        for (int index = firstPage; index < document.getNumberOfPages(); index++) {
+            PDPage page = document.getPage(index);
+            streamDeduplicator.deduplicate(page);
+            appended.add(page);
+            // annotations and tagged content refer back to their page, they can't be shared by copies of it
+            shareable &= !page.getCOSObject().containsKey(COSName.ANNOTS) && !page.getCOSObject().containsKey(COSName.STRUCT_PARENTS);
+        }
+
+        if (pagesKey != null && shareable) {
+            insertedPages.put(pagesKey, appended);
+        }
+
+        mergedPages += appended.size();
+    }
+
+    /** @return the hash of the source, which is computed once per source of the document */
+    private String contentHashOf(PageSource pageSource, Object sourceKey) throws IOException {
+        String contentHash = sourceHashes.get(sourceKey);
+        if (contentHash == null) {
+            contentHash = insertCache.contentHash(pageSource, sourceKey);
+            sourceHashes.put(sourceKey, contentHash);
+        }
+
+        return contentHash;
+    }
+
+    /** Closes the sources of the pages and tables which were not laid out, e.g. due to an error. */
+    private void closeSources() throws IOException {
+        if (table != null) {
+            table.close();
+            table = null;
+        }
+
+        for (TableRows tableRows = tableBuffer.poll(); tableRows != null; tableRows = tableBuffer.poll()) {
+            tableRows.close();
+        }
+
+        IOException exception = null;
+        for (PageSource pageSource = pageBuffer.poll(); pageSource != null; pageSource = pageBuffer.poll()) {
+            try {
+                pageSource.close();
+            } catch (IOException e) {
+                if (exception == null) {
+                    exception = e;
+                } else {
+                    exception.addSuppressed(e);
+                }
+            }
+        }
+
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    /** Lays out the pages of the text exceeding the page window, if any. */
+    private void flushPages() {
+        if (pageWindow == 0) {
+            return;
+        }
+
+        // every laid out page consumes at least the usable height, the buffer can't run dry mid-page
+        float windowHeight = pageWindow * (PDF_RECT.getHeight() - marginBottom);
+        try {
+            while (bufferedHeight > windowHeight || pages != null) {
+                layoutNextPages(() -> bufferedHeight > windowHeight);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not lay out pages", e);
+        }
+    }
+
+    /**
+     * Assigns the text of the buffer to the next page and its lines to their y position, without writing anything
+     * or changing the state of the document.
+     *
+     * @param texts
+     *         the buffer to take the text of the page from
+     * @return the layout of the page, which is no page if the buffer is empty or pages are inserted first
+     */
+    private PageLayout layoutPage(TextBuffer texts) {
+        float yCursor = PDF_RECT.getHeight();
+
+        PageLayout pageLayout = new PageLayout(texts.store());
+        if (table != null) {
+            yCursor = layoutTableRows(pageLayout, yCursor);
+            if (table != null || texts.isEmpty()) {
+                pageLayout.markPage();
+                return pageLayout;
+            }
+        }
+
+        do {
+            // a line of text is added to the page at the cursor
+            TextType type = texts.poll(pageLayout, yCursor);
+            if (type == null) {
+                return pageLayout;
+            }
+
+            pageLayout.consume(type.getLeading());
+
+            switch (type) {
+                case PAGE_BREAK -> yCursor = 0;
+                case NEW_LINE -> yCursor -= type.getLeading();
+                case INSERT_PAGE -> {
+                    pageLayout.markInsertsPages();
+                    // corner case: the insertable pages must be added directly without blank pages in between
+                    if (yCursor == PDF_RECT.getHeight()) {
+                        return pageLayout;
+                    } else {
+                        yCursor = 0;
                     }
                 }
-            } while (!textBuffer.isEmpty() && yCursor > marginBottom);
+                case TABLE -> {
+                    table = tableBuffer.poll();
+                    yCursor = layoutTableRows(pageLayout, yCursor);
+                }
+                default -> yCursor -= type.getLeading();
+            }
+        } while (!texts.isEmpty() && yCursor > marginBottom);
+
+        pageLayout.markPage();
+        return pageLayout;
+    }
 
-            writeHeaderAndFooter(contentStream);
+    /**
+     * Lays out the rows of the current table on the page, starting with the header row. The table is finished when
+     * its last row is laid out.
+     *
+     * @param pageLayout
+     *         the layout of the page
+     * @param yCursor
+     *         the y position of the first row
+     * @return the y position after the last row, 0 if the page is full and the table continues on the next page
+     */
+    private float layoutTableRows(PageLayout pageLayout, float yCursor) {
+        boolean freshPage = yCursor == PDF_RECT.getHeight();
+        FontFragment headerFragment = createSingleFontFragment(true, false);
+        FontFragment cellFragment = createSingleFontFragment(false, false);
+
+        boolean rowPlaced = false;
+        for (List<String> row = table.next(); row != null; row = table.next()) {
+            float rowHeight = wrapRow(row, false);
+            float headerHeight = rowPlaced || table.header() == null ? 0 : wrapRow(table.header(), true);
+
+            // a row higher than the page is placed anyway, on its own page
+            if (yCursor - headerHeight - rowHeight < marginBottom && !(freshPage && !rowPlaced)) {
+                table.pushBack(row);
+                return 0;
+            }
+
+            if (headerHeight > 0) {
+                placeRow(pageLayout, table.header(), yCursor, headerFragment);
+                yCursor -= headerHeight;
+                wrapRow(row, false);
+            }
+
+            placeRow(pageLayout, row, yCursor, cellFragment);
+            yCursor -= rowHeight;
+            rowPlaced = true;
         }
 
-        return page;
+        table.close();
+        table = null;
+        return yCursor;
     }
 
-    private void drawLine(PDPageContentStream contentStream, DocText docText) throws IOException {
-        // index of line drawing must be controlled by the fragments ALSO whenever text is wrapped,
-        // but for now we assume only short / one-line texts
-        float startIndex = marginLeft;
-        for (FontFragment fontFragment : docText.fontFragments()) {
-            if (!fontFragment.underlined()) {
-                startIndex += fontFragment.width();
-                continue;
+    /**
+     * Wraps the cells of the row into {@link #cellRanges}.
+     *
+     * @return the height of the row
+     */
+    private float wrapRow(List<String> row, boolean bold) {
+        float[] columnWidths = table.columnWidths();
+        if (cellRanges.length < columnWidths.length) {
+            cellRanges = new LineRanges[columnWidths.length];
+            for (int column = 0; column < columnWidths.length; column++) {
+                cellRanges[column] = new LineRanges();
             }
+        }
 
-            float lineWidth = docText.type().getFontSize() / TextType.HEADING.getFontSize();
-            float underlineY = yCursor - 2 * lineWidth;
+        TextType type = TextType.TABLE;
+        GlyphWidths widths = widthsOf(bold);
+        int lines = 1;
+        for (int column = 0; column < columnWidths.length; column++) {
+            String cell = cellOf(row, column);
+            cellRanges[column].clear();
+            wrap(cell, widths, type.getFontSize(), columnWidths[column] - CELL_PADDING, cellRanges[column]);
+            lines = Math.max(lines, cellRanges[column].size());
+        }
+
+        return lines * type.getLeading();
+    }
 
-            contentStream.setLineWidth(lineWidth);
-            contentStream.moveTo(startIndex, underlineY);
+    /** Adds the lines of the cells of the row wrapped by {@link #wrapRow(List, boolean)} to the page. */
+    private void placeRow(PageLayout pageLayout, List<String> row, float yCursor, FontFragment fontFragment) {
+        float[] columnWidths = table.columnWidths();
+        float leading = TextType.TABLE.getLeading();
+
+        float x = marginLeft;
+        for (int column = 0; column < columnWidths.length; column++) {
+            LineRanges lines = cellRanges[column];
+            String cell = cellOf(row, column);
+            for (int line = 0; line < lines.size(); line++) {
+                pageLayout.add(cell, lines.start(line), lines.end(line), x, TextType.TABLE, fontFragment, lines.width(line), yCursor - line * leading);
+            }
+
+            x += columnWidths[column];
+        }
+    }
 
-            float width = startIndex;
-            String text = docText.text();
-            for (int index = 0; index < text.length(); index++) {
-                if (index >= fontFragment.width()) {
-                    break;
+    /** @return the text of the cell, empty if the row has no such cell */
+    private static String cellOf(List<String> row, int column) {
+        return column < row.size() && row.get(column) != null ? row.get(column) : "";
+    }
+
+    /** Writes the content of the laid out pages, in parallel if there's an executor, and adds the pages in order. */
+    private void addPages(List<PageLayout> pageLayouts, boolean measured) throws IOException {
+        if (pageLayouts.isEmpty()) {
+            return;
+        }
+
+        // the shared forms are created here, the content of the pages only refers to them
+        PDFormXObject headerAndFooter = headerAndFooterPerPage || (header.isEmpty() && footer.isEmpty()) ? null : getHeaderAndFooterForm();
+        PDFormXObject totalPages = pageNumberLabel == null || totalPagesLabel == null ? null : getTotalPagesForm();
+        // the pages inserted so far are already part of the document
+        int firstPageNumber = document.getNumberOfPages() + 1;
+
+        if (executor == null || pageLayouts.size() == 1) {
+            for (int index = 0; index < pageLayouts.size(); index++) {
+                addPage(writePage(pageLayouts.get(index), firstPageNumber + index, headerAndFooter, totalPages, false));
+            }
+
+            return;
+        }
+
+        List<CompletableFuture<PageContent>> pageContents = new ArrayList<>(pageLayouts.size());
+        for (int index = 0; index < pageLayouts.size(); index++) {
+            PageLayout pageLayout = pageLayouts.get(index);
+            int pageNumber = firstPageNumber + index;
+            pageContents.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return writePage(pageLayout, pageNumber, headerAndFooter, totalPages, measured);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
                 }
+            }, executor));
+        }
+
+        for (CompletableFuture<PageContent> pageContent : pageContents) {
+            PageContent writtenContent = join(pageContent);
+            pageTaskAllocatedBytes += writtenContent.allocatedBytes();
+            phaseAllocatedBytes[Phase.WRITE_PAGES.ordinal()] += writtenContent.allocatedBytes();
+            addPage(writtenContent);
+        }
+    }
+
+    /** Waits for the task on the executor, rethrowing the {@link IOException} it failed with. */
+    private static <T> T join(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException uncheckedIOException) {
+                throw uncheckedIOException.getCause();
+            }
+
+            throw e;
+        }
+    }
 
-                char charAt = text.charAt(index);
-                width += getCharFontWidth(charAt, docText.type());
+    /**
+     * Writes the content of a laid out page into a compressed buffer. It only reads the state of the document, so it
+     * can run on any thread. The bytes allocated on a thread other than the converting one are measured on request.
+     */
+    private PageContent writePage(PageLayout pageLayout, int pageNumber, PDFormXObject headerAndFooter, PDFormXObject totalPages,
+            boolean measured) throws IOException {
+        long startBytes = measured ? ThreadAllocation.allocatedBytes() : 0;
+        ByteArrayOutputStream content = new ByteArrayOutputStream(8192);
+        Deflater deflater = new Deflater(saveProfile.deflateLevel());
+        PageContentWriter contentWriter = new PageContentWriter(new DeflaterOutputStream(content, deflater, 4096), kerning);
+
+        try (contentWriter) {
+            LineColumns lines = pageLayout.lines();
+            for (int line = 0; line < lines.size(); line++) {
+                appendLine(contentWriter, lines, line, pageLayout.y(line));
             }
 
-            contentStream.lineTo(width, underlineY);
-            contentStream.stroke();
+            if (headerAndFooterPerPage) {
+                writeHeaderAndFooter(contentWriter);
+            } else if (headerAndFooter != null) {
+                contentWriter.drawForm(headerAndFooter);
+            }
 
-            startIndex += fontFragment.width();
+            if (pageNumberLabel != null) {
+                writePageNumber(contentWriter, pageNumber, totalPages);
+            }
+        } finally {
+            deflater.end();
         }
+
+        byte[] pageContent = content.toByteArray();
+        return new PageContent(contentWriter, pageContent, pageLayout.size(), measured ? ThreadAllocation.allocatedBytes() - startBytes : 0);
     }
 
-    private void toBuffer(String text, float xStart, TextType type, Collection<FontFragment> fontFragments) {
-        Collection<String> wrappedText = wrapText(text, xStart, type);
+    /** Adds the page of the written content to the document, this must run on the calling thread. */
+    private void addPage(PageContent pageContent) throws IOException {
+        checkAborted();
+        PDResources resources = new PDResources();
+        pageContent.contentWriter().registerResources(resources);
+        lineCount += pageContent.lines();
+        glyphCount += pageContent.contentWriter().glyphCount();
+        contentBytes += pageContent.content().length;
+
+        COSStream contents = document.getDocument().createCOSStream();
+        try (OutputStream outputStream = contents.createRawOutputStream()) {
+            outputStream.write(pageContent.content());
+        }
+        contents.setItem(COSName.FILTER, COSName.FLATE_DECODE);
 
-        for (String line : wrappedText) {
-            DocText docText = new DocText(line, xStart, type, fontFragments);
-            textBuffer.add(docText);
+        PDPage page = new PDPage(PDF_RECT);
+        page.setResources(resources);
+        page.setContents(new PDStream(contents));
+        document.addPage(page);
+    }
+
+    private void toBuffer(String text, float xStart, TextType type, FontFragment fontFragment) {
+        LineRanges wrappedText = wrapText(text, xStart, type, widthsOf(fontFragment.font()));
+        for (int index = 0; index < wrappedText.size(); index++) {
+            textBuffer.add(text, wrappedText.start(index), wrappedText.end(index), xStart, type, fontFragment, wrappedText.width(index));
+            bufferedHeight += type.getLeading();
         }
+
+        flushPages();
     }
 
     /**
-     * Wraps the text based on any \n and visual text bounds and returns a list of lines.
+     * Wraps a window of streamed text and adds its lines. Unless the window is the end of the text, its last line
+     * may continue in the next window, so it's left to be wrapped again with it.
+     *
+     * @param text
+     *         the text
+     * @param from
+     *         the index of the first char of the window
+     * @param to
+     *         the index after the last char of the window
+     * @param end
+     *         <code>true</code>, whether the window is the end of the text
+     * @param xStart
+     *         where the text starts
+     * @param type
+     *         the text type
+     * @param fontFragment
+     *         the style of the text
+     * @return the index of the first char not added, where the next window starts
+     */
+    private int toBuffer(CharSequence text, int from, int to, boolean end, float xStart, TextType type, FontFragment fontFragment) {
+        long start = phaseStart();
+        long startBytes = allocationStart(start);
+        lineRanges.clear();
+        // the windows are unique, they are never cached
+        LineBreaker.wrap(text, from, to, widthsOf(fontFragment.font()), type.getFontSize(), kerning,
+                PDF_RECT.getWidth() - xStart - marginRight, lineRanges);
+        phaseEnd(Phase.WRAP, start, startBytes);
+
+        int lines = end ? lineRanges.size() : lineRanges.size() - 1;
+        for (int index = 0; index < lines; index++) {
+            textBuffer.add(text, lineRanges.start(index), lineRanges.end(index), xStart, type, fontFragment, lineRanges.width(index));
+            bufferedHeight += type.getLeading();
+        }
+
+        flushPages();
+        return end ? to : lineRanges.start(lines);
+    }
+
+    /**
+     * Wraps the runs as one text and adds its lines, each with the fragments of the runs it contains. The fragments
+     * are measured by the line breaker, so the lines are written without measuring them again.
+     */
+    private void toBuffer(List<TextRun> runs, float xStart, TextType type) {
+        if (runs.isEmpty()) {
+            throw new IllegalArgumentException("The rich text must have at least one run!");
+        }
+
+        StringBuilder builder = new StringBuilder();
+        int[] runEnds = new int[runs.size()];
+        GlyphWidths[] runWidths = new GlyphWidths[runs.size()];
+        boolean oneFont = true;
+        for (int run = 0; run < runs.size(); run++) {
+            TextRun textRun = runs.get(run);
+            // the tabs are written as spaces, replaced up front to keep the runs aligned with the lines
+            builder.append(textRun.text().replace(Constants.TAB, Constants.TAB_AS_SPACES));
+            runEnds[run] = builder.length();
+            runWidths[run] = widthsOf(textRun.bold());
+            oneFont &= runWidths[run] == runWidths[0];
+        }
+
+        String text = builder.toString();
+        float fontSize = type.getFontSize();
+        float maxWidth = PDF_RECT.getWidth() - xStart - marginRight;
+        lineRanges.clear();
+        long start = phaseStart();
+        long startBytes = allocationStart(start);
+        if (oneFont && wrapCache != null) {
+            // only the underlines differ, e.g. a title and its value, which are repeated and cached
+            wrapCache.wrap(text, runEnds, runWidths[0], fontSize, kerning, maxWidth, lineRanges);
+        } else {
+            LineBreaker.wrap(text, runEnds, runWidths, fontSize, kerning, maxWidth, lineRanges);
+        }
+        phaseEnd(Phase.WRAP, start, startBytes);
+
+        // the fragments are copied into the columns of the buffer, so they are reused for every line
+        List<FontFragment> fontFragments = new ArrayList<>(2);
+        float[] advances = new float[2];
+        for (int index = 0; index < lineRanges.size(); index++) {
+            fontFragments.clear();
+            int firstFragment = lineRanges.firstFragment(index);
+            int fragmentEnd = lineRanges.fragmentEnd(index);
+            if (advances.length < fragmentEnd - firstFragment) {
+                advances = new float[fragmentEnd - firstFragment];
+            }
+
+            for (int fragment = firstFragment; fragment < fragmentEnd; fragment++) {
+                TextRun textRun = runs.get(lineRanges.fragmentRun(fragment));
+                advances[fragment - firstFragment] = lineRanges.fragmentWidth(fragment);
+                fontFragments.add(new FontFragment(lineRanges.fragmentLength(fragment), textRun.bold() ? boldMetrics : normalMetrics, textRun.underlined()));
+            }
+
+            textBuffer.add(text, lineRanges.start(index), lineRanges.end(index), xStart, type, fontFragments, advances);
+            bufferedHeight += type.getLeading();
+        }
+
+        flushPages();
+    }
+
+    private void toBuffer(TextType type) {
+        textBuffer.add(type);
+        bufferedHeight += type.getLeading();
+
+        flushPages();
+    }
+
+    /**
+     * Wraps the text based on any \n and visual text bounds and returns the lines as ranges of the text.
      *
      * @param text
      *         the text
@@ -492,80 +1715,214 @@ public class EasyDocument {
      *         where the text should start, typically calculating in the left margin.
      * @param type
      *         the text type
-     * @return a list of lines (wrapped)
+     * @param widths
+     *         the glyph widths of the font the text is written with
+     * @return the lines (wrapped), valid until the next call
      */
-    private Collection<String> wrapText(String text, float xStart, TextType type) {
+    private LineRanges wrapText(String text, float xStart, TextType type, GlyphWidths widths) {
         float width = PDF_RECT.getWidth();
         float reservedSpacing = xStart + marginRight;
         width -= reservedSpacing;
 
+        lineRanges.clear();
+        wrap(text, widths, type.getFontSize(), width, lineRanges);
+        return lineRanges;
+    }
+
+    private void wrap(String text, GlyphWidths widths, float fontSize, float maxWidth, LineRanges ranges) {
+        long start = phaseStart();
+        long startBytes = allocationStart(start);
+        if (wrapCache != null) {
+            wrapCache.wrap(text, widths, fontSize, kerning, maxWidth, ranges);
+        } else {
+            LineBreaker.wrap(text, 0, text.length(), widths, fontSize, kerning, maxWidth, ranges);
+        }
+        phaseEnd(Phase.WRAP, start, startBytes);
+    }
+
+    private static String lineOf(CharSequence text, int start, int end) {
+        String line = text.subSequence(start, end).toString();
         // the TAB character seems to be not present in some bold, replacing with spaces here (spaces > tabs)
-        String[] lines = text.replace(Constants.TAB, "    ").split(Constants.NEW_LINE);
+        return line.indexOf('\t') == -1 ? line : line.replace(Constants.TAB, Constants.TAB_AS_SPACES);
+    }
 
-        Collection<String> wrappedText = new ArrayList<>();
-        for (String line : lines) {
-            float currentLineWidth = 0;
-            int substringIndex = 0;
+    private float widthOf(String text, GlyphWidths widths, TextType type) {
+        return widthOf(text, 0, text.length(), widths, type.getFontSize());
+    }
 
-            for (int index = 0; index < line.length(); index++) {
-                char charAt = line.charAt(index);
+    /** @return the width of the range of the text written with a text operator of its own */
+    private float widthOf(CharSequence text, int start, int end, GlyphWidths widths, float fontSize) {
+        float width = 0;
+        int previous = -1;
+        for (int index = start; index < end; ) {
+            int codePoint = Character.codePointAt(text, index);
+            width += LineBreaker.measure(previous, codePoint, widths, kerning);
+            previous = codePoint;
+            index += Character.charCount(codePoint);
+        }
 
-                currentLineWidth += getCharFontWidth(charAt, type);
+        return width * fontSize;
+    }
 
-                if (currentLineWidth >= width) {
-                    // line is too long, chop it down 'till the last fitting word and continue
-                    String maxText = line.substring(substringIndex, index).trim();
-                    int indexOfSpace = maxText.lastIndexOf(Constants.SPACE);
-                    if (indexOfSpace != -1) {
-                        index = substringIndex + indexOfSpace + 1;
-                    }
+    private GlyphWidths widthsOf(boolean bold) {
+        return bold ? boldMetrics.getWidths() : normalMetrics.getWidths();
+    }
 
-                    String maxWords = line.substring(substringIndex, index);
-                    wrappedText.add(maxWords);
+    private GlyphWidths widthsOf(RegisteredFont font) {
+        return font.getWidths();
+    }
 
-                    currentLineWidth = 0;
-                    substringIndex = index;
-                }
+    /**
+     * Embeds the subsets of the loaded fonts, in parallel on the executor when more than one font is loaded. The
+     * content is written by PageContentWriter, so the glyphs to embed were already collected page by page.
+     */
+    private void subsetFonts() throws IOException {
+        if (executor == null || !normalFont.isLoaded() || !boldFont.isLoaded()) {
+            normalFont.subset();
+            boldFont.subset();
+            return;
+        }
+
+        // subsetting a font only changes the objects of the font itself, the fonts are already loaded on this thread
+        CompletableFuture<Void> boldSubset = CompletableFuture.runAsync(() -> {
+            try {
+                boldFont.subset();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+
+        normalFont.subset();
+        join(boldSubset);
+    }
+
+    private long fontLoadNanos() {
+        return normalFont.loadNanos() + boldFont.loadNanos();
+    }
+
+    private long fontLoadAllocatedBytes() {
+        return normalFont.loadAllocatedBytes() + boldFont.loadAllocatedBytes();
+    }
+
+    /**
+     * Starts measuring a phase, only when the instrumentation or a Flight Recorder recording receives the phases, so
+     * the hot paths don't read the clock and the allocated bytes for nothing.
+     *
+     * @return the start time of the phase, {@link #NOT_MEASURED} if it's not measured
+     */
+    private long phaseStart() {
+        return instrumentation == Instrumentation.NONE && !PHASE_EVENT.isEnabled() ? NOT_MEASURED : System.nanoTime();
+    }
+
+    /** @return the bytes allocated by the thread at the start of the phase, 0 if it's not measured */
+    private static long allocationStart(long start) {
+        return start == NOT_MEASURED ? 0 : ThreadAllocation.allocatedBytes();
+    }
+
+    /** Adds the time spent and the bytes allocated since the start of the phase, unless it's not measured. */
+    private void phaseEnd(Phase phase, long start, long startBytes) {
+        if (start != NOT_MEASURED) {
+            phaseNanos[phase.ordinal()] += System.nanoTime() - start;
+            phaseAllocatedBytes[phase.ordinal()] += ThreadAllocation.allocatedBytes() - startBytes;
+        }
+    }
+
+    private DocumentFont documentFontOf(RegisteredFont font) {
+        return font == boldMetrics ? boldFont : normalFont;
+    }
+
+    /** @return the form of the header and the footer, rendered when it's first used after they were set */
+    private PDFormXObject getHeaderAndFooterForm() throws IOException {
+        if (headerAndFooterForm == null) {
+            PDResources resources = new PDResources();
+            PDStream contents = new PDStream(document);
+
+            PDFormXObject form = new PDFormXObject(contents);
+            form.setBBox(PDF_RECT);
+            form.setResources(resources);
+
+            PageContentWriter contentWriter = new PageContentWriter(contents.createOutputStream(COSName.FLATE_DECODE), kerning);
+            try (contentWriter) {
+                writeHeaderAndFooter(contentWriter);
             }
 
-            // last (remaining) line
-            wrappedText.add(line.substring(substringIndex));
+            contentWriter.registerResources(resources);
+            headerAndFooterForm = form;
         }
 
-        return wrappedText;
+        return headerAndFooterForm;
     }
 
-    private float getCharFontWidth(char charAt, TextType type) {
-        float length = CHAR_WIDTH_MAP.computeIfAbsent(charAt, this::calculateCharWidth);
-        return length * type.getFontSize();
+    private void writePageNumber(PageContentWriter contentWriter, int pageNumber, PDFormXObject totalPages) throws IOException {
+        TextType type = TextType.PAGE_NUMBER;
+        GlyphWidths widths = normalFont.widths();
+        String text = pageNumberLabel + pageNumber + (totalPagesLabel == null ? "" : totalPagesLabel);
+
+        // the position is the same on every page, reserving space for 4 digit numbers
+        String reserved = pageNumberLabel + "0000" + (totalPagesLabel == null ? "" : totalPagesLabel + "0000");
+        float x = PDF_RECT.getWidth() - marginRight - widthOf(reserved, widths, type);
+        float y = type.getLeading();
+
+        contentWriter.showText(normalFont, type.getFontSize(), x, y, text);
+        if (totalPages != null) {
+            contentWriter.drawForm(totalPages, x + widthOf(text, widths, type), y);
+        }
     }
 
-    private float calculateCharWidth(char charAt) {
-        try {
-            return normalFont.getStringWidth(String.valueOf(charAt)) / 1000f;
-        } catch (IOException e) {
-            throw new UncheckedIOException("Could not compute char width", e);
+    /** @return the form of the total number of pages, which is written by {@link #writeTotalPages()} */
+    private PDFormXObject getTotalPagesForm() {
+        if (totalPagesForm == null) {
+            float fontSize = TextType.PAGE_NUMBER.getFontSize();
+
+            totalPagesForm = new PDFormXObject(new PDStream(document));
+            totalPagesForm.setBBox(new PDRectangle(0, -fontSize, PDF_RECT.getWidth(), 2 * fontSize));
+            totalPagesForm.setResources(new PDResources());
+        }
+
+        return totalPagesForm;
+    }
+
+    /** Writes the total number of pages into its form, once all the pages are laid out or inserted. */
+    private void writeTotalPages() throws IOException {
+        if (totalPagesForm == null) {
+            return;
+        }
+
+        OutputStream outputStream = totalPagesForm.getContentStream().createOutputStream(COSName.FLATE_DECODE);
+        PageContentWriter contentWriter = new PageContentWriter(outputStream, kerning);
+        try (contentWriter) {
+            String totalPages = String.valueOf(document.getNumberOfPages());
+            contentWriter.showText(normalFont, TextType.PAGE_NUMBER.getFontSize(), 0, 0, totalPages);
         }
+
+        contentWriter.registerResources(totalPagesForm.getResources());
     }
 
-    private void writeHeaderAndFooter(PDPageContentStream contentStream) throws IOException {
-        yCursor = PDF_RECT.getHeight();
+    private void writeHeaderAndFooter(PageContentWriter contentWriter) throws IOException {
+        float y = PDF_RECT.getHeight();
         for (DocText docText : header) {
-            yCursor -= docText.type().getLeading();
+            y -= docText.type().getLeading();
 
-            appendLine(contentStream, docText);
+            appendLine(contentWriter, docText, y);
         }
 
-        yCursor = 0;
+        y = 0;
         for (DocText docText : footer.reversed()) {
-            yCursor += docText.type().getLeading();
+            y += docText.type().getLeading();
 
-            appendLine(contentStream, docText);
+            appendLine(contentWriter, docText, y);
         }
     }
 
-    private Collection<FontFragment> createSingleFontFragment(int endIndex, boolean bold, boolean underlined) {
-        PDType0Font font = bold ? boldFont : normalFont;
-        return List.of(new FontFragment(endIndex, font, underlined));
+    /** The content of a page written by {@link #writePage}, which is compressed and not yet part of the document. */
+    private record PageContent(PageContentWriter contentWriter, byte[] content, int lines, long allocatedBytes) { }
+
+    /** @return the font fragment of a line in one style, one of the four created with the document */
+    private FontFragment createSingleFontFragment(boolean bold, boolean underlined) {
+        return singleFontFragments[styleIndex(bold, underlined)];
+    }
+
+    private static int styleIndex(boolean bold, boolean underlined) {
+        return (bold ? 2 : 0) + (underlined ? 1 : 0);
     }
 }
@@ -1,12 +1,12 @@
 package io.github.mjoe92.easypdfbox;
 
-import org.apache.pdfbox.pdmodel.font.PDType0Font;
-
 /**
- * Helps to define the {@link PDType0Font} and underline for an object (e.g. text) in certain char width.
+ * Helps to define the {@link RegisteredFont} and underline for an object (e.g. text) in certain char width. The
+ * font is independent of any document, so the text can be shared by documents, e.g. of a {@link DocumentTemplate}.
+ * The fragments of a line follow each other, the last one covers the rest of the line.
  *
  * @param width
  * @param font
  * @param underlined
  */
-public record FontFragment(int width, PDType0Font font, boolean underlined) { }
+record FontFragment(int width, RegisteredFont font, boolean underlined) { }
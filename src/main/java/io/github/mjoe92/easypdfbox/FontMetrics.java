@@ -0,0 +1,66 @@
+package io.github.mjoe92.easypdfbox;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * The metrics of a font needed for the layout, stored in a compact binary file: the em size, ascent, descent and
+ * the {@link GlyphWidths} (advance widths, glyph ids and kerning pairs). The metrics files of the bundled fonts are
+ * generated at build time by the {@link FontMetricsGenerator}, so wrapping and layout start without parsing the TrueType
+ * files, which are only parsed when their glyphs are embedded.
+ *
+ * @param unitsPerEm
+ *         the units per em of the font
+ * @param ascent
+ *         the ascent relative to the font size
+ * @param descent
+ *         the (negative) descent relative to the font size
+ * @param widths
+ *         the glyph widths
+ */
+record FontMetrics(int unitsPerEm, float ascent, float descent, GlyphWidths widths) {
+
+    /** The file name extension of the metrics files, next to the TrueType files of the bundled fonts. */
+    static final String EXTENSION = ".metrics";
+
+    private static final int MAGIC = 0x4550464D;
+    private static final int VERSION = 1;
+
+    /**
+     * Reads the metrics file, the stream is not closed.
+     *
+     * @param inputStream
+     *         the stream of the metrics file
+     * @return the metrics
+     */
+    static FontMetrics read(InputStream inputStream) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(inputStream));
+        if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+            throw new IllegalStateException("Unsupported font metrics file, it must be generated by the same version!");
+        }
+
+        return new FontMetrics(input.readInt(), input.readFloat(), input.readFloat(), new GlyphWidths(input));
+    }
+
+    /**
+     * Writes the metrics file, the stream is not closed.
+     *
+     * @param outputStream
+     *         the stream of the metrics file
+     */
+    void write(OutputStream outputStream) throws IOException {
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(outputStream));
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeInt(unitsPerEm);
+        output.writeFloat(ascent);
+        output.writeFloat(descent);
+        widths.write(output);
+        output.flush();
+    }
+}
@@ -0,0 +1,29 @@
+package io.github.mjoe92.easypdfbox;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Generates the {@link FontMetrics} files of the bundled fonts next to their TrueType files, run by the build after
+ * compiling the classes. It's not meant to be used by applications.
+ */
+public final class FontMetricsGenerator {
+
+    private FontMetricsGenerator() { }
+
+    /**
+     * @param args
+     *         the directory of the compiled classes, followed by the names of the bundled fonts
+     */
+    public static void main(String[] args) throws IOException {
+        Path directory = Path.of(args[0], FontMetricsGenerator.class.getPackageName().split("\\."));
+        for (int index = 1; index < args.length; index++) {
+            RegisteredFont font = FontRegistry.parseBundled(args[index]);
+            try (OutputStream outputStream = Files.newOutputStream(directory.resolve(args[index] + FontMetrics.EXTENSION))) {
+                font.getMetrics().write(outputStream);
+            }
+        }
+    }
+}
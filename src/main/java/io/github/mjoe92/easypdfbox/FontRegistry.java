@@ -0,0 +1,148 @@
+package io.github.mjoe92.easypdfbox;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.fontbox.ttf.TTFParser;
+import org.apache.fontbox.ttf.TrueTypeFont;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.io.RandomAccessReadBuffer;
+import org.apache.pdfbox.io.RandomAccessReadBufferedFile;
+
+/**
+ * The process-wide registry of fonts: every TrueType file is parsed only once per JVM and shared by all the
+ * {@link EasyDocument}s, which only create their own lightweight wrapper for the subset embedding.
+ * <p>
+ * The bundled fonts ({@link #CALIBRI} and {@link #CALIBRI_BOLD}) are registered lazily on first use, custom fonts
+ * can be added with the <code>register</code> methods. The registry is safe to use from multiple threads.
+ */
+public final class FontRegistry {
+
+    public static final String CALIBRI = "calibri";
+    public static final String CALIBRI_BOLD = "calibri-bold";
+
+    private static final Map<String, RegisteredFont> FONTS = new ConcurrentHashMap<>(8);
+
+    private FontRegistry() { }
+
+    /**
+     * @param name
+     *         the name of the font
+     * @return the registered font
+     * @throws IllegalArgumentException
+     *         when no font is registered with the name
+     */
+    public static RegisteredFont get(String name) {
+        RegisteredFont font = FONTS.get(name);
+        if (font != null) {
+            return font;
+        }
+
+        if (!CALIBRI.equals(name) && !CALIBRI_BOLD.equals(name)) {
+            throw new IllegalArgumentException("No font is registered with name '" + name + "'");
+        }
+
+        return FONTS.computeIfAbsent(name, FontRegistry::loadBundled);
+    }
+
+    /**
+     * @param name
+     *         the name of the font
+     * @return <code>true</code>, whether a font is registered (or bundled) with the name
+     */
+    public static boolean isRegistered(String name) {
+        return FONTS.containsKey(name) || CALIBRI.equals(name) || CALIBRI_BOLD.equals(name);
+    }
+
+    /**
+     * Parses and registers a custom TrueType font. The stream is read fully, but not closed.
+     *
+     * @param name
+     *         the name to register the font with
+     * @param fontStream
+     *         the stream of the TrueType file
+     * @return the registered font
+     * @throws IllegalStateException
+     *         when a font is already registered with the name
+     */
+    public static RegisteredFont register(String name, InputStream fontStream) throws IOException {
+        return register(name, new RandomAccessReadBuffer(fontStream));
+    }
+
+    /**
+     * Parses and registers a custom TrueType font.
+     *
+     * @param name
+     *         the name to register the font with
+     * @param fontFile
+     *         the path of the TrueType file
+     * @return the registered font
+     * @throws IllegalStateException
+     *         when a font is already registered with the name
+     */
+    public static RegisteredFont register(String name, Path fontFile) throws IOException {
+        return register(name, new RandomAccessReadBufferedFile(fontFile));
+    }
+
+    private static RegisteredFont register(String name, RandomAccessRead fontData) throws IOException {
+        if (isRegistered(name)) {
+            throw new IllegalStateException("Font '" + name + "' is already registered!");
+        }
+
+        RegisteredFont font = parse(name, fontData);
+        if (FONTS.putIfAbsent(name, font) != null) {
+            font.getTrueTypeFont().close();
+            throw new IllegalStateException("Font '" + name + "' is already registered!");
+        }
+
+        return font;
+    }
+
+    /** Creates the bundled font from its metrics generated at build time, or parses it if there are none. */
+    private static RegisteredFont loadBundled(String name) {
+        try (InputStream metricsStream = FontRegistry.class.getResourceAsStream(name + FontMetrics.EXTENSION)) {
+            if (metricsStream == null) {
+                // e.g. running from the sources, without the build generating the metrics
+                return parseBundled(name);
+            }
+
+            return new RegisteredFont(name, FontMetrics.read(metricsStream), () -> parseBundledTrueType(name));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not load font", e);
+        }
+    }
+
+    /**
+     * @param name
+     *         the name of the bundled font
+     * @return the parsed bundled font, not registered
+     */
+    static RegisteredFont parseBundled(String name) throws IOException {
+        return new RegisteredFont(name, parseBundledTrueType(name));
+    }
+
+    private static TrueTypeFont parseBundledTrueType(String name) throws IOException {
+        try (InputStream fontStream = FontRegistry.class.getResourceAsStream(name + ".ttf")) {
+            if (fontStream == null) {
+                throw new IllegalStateException("Bundled font '" + name + "' is missing");
+            }
+
+            return parseTrueType(new RandomAccessReadBuffer(fontStream));
+        }
+    }
+
+    private static RegisteredFont parse(String name, RandomAccessRead fontData) throws IOException {
+        return new RegisteredFont(name, parseTrueType(fontData));
+    }
+
+    private static TrueTypeFont parseTrueType(RandomAccessRead fontData) throws IOException {
+        // the parser copies the data into its own buffer, the source is not needed afterward
+        try (fontData) {
+            return new TTFParser().parse(fontData);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package io.github.mjoe92.easypdfbox;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.fontbox.ttf.TrueTypeFont;
+import org.apache.fontbox.ttf.gsub.GsubWorker;
+import org.apache.fontbox.ttf.gsub.GsubWorkerFactory;
+import org.apache.fontbox.ttf.model.GsubData;
+import org.apache.fontbox.ttf.model.Language;
+
+/**
+ * The glyph substitutions a font needs to shape the text of its script, applied by the GSUB worker of FontBox to the
+ * words of a text the same way {@link org.apache.pdfbox.pdmodel.PDPageContentStream} applies them.
+ * <p>
+ * The substitutions of Latin fonts are only optional ligatures: they are not applied, so the written glyphs are the
+ * measured ones and the text stays extractable (the ligature glyphs have no proper unicode mapping).
+ */
+final class GlyphSubstitution {
+
+    /** No substitution is needed, the glyphs are written as mapped by the cmap. */
+    static final GlyphSubstitution NONE = new GlyphSubstitution(null);
+
+    private final GsubWorker worker;
+
+    private GlyphSubstitution(GsubWorker worker) {
+        this.worker = worker;
+    }
+
+    /**
+     * @param trueTypeFont
+     *         the font with all its tables read
+     * @return the substitutions needed by the script of the font
+     */
+    static GlyphSubstitution of(TrueTypeFont trueTypeFont) throws IOException {
+        GsubData gsubData = trueTypeFont.getGsubData();
+        if (gsubData == GsubData.NO_DATA_FOUND || gsubData.getLanguage() == Language.UNSPECIFIED
+                || gsubData.getLanguage() == Language.LATIN) {
+            return NONE;
+        }
+
+        return new GlyphSubstitution(new GsubWorkerFactory().getGsubWorker(trueTypeFont.getUnicodeCmapLookup(), gsubData));
+    }
+
+    /** @return <code>true</code>, whether no substitution is needed */
+    boolean isEmpty() {
+        return worker == null;
+    }
+
+    /**
+     * @param glyphIds
+     *         the glyphs of a word, mapped by the cmap
+     * @return the glyphs to write
+     */
+    List<Integer> apply(List<Integer> glyphIds) {
+        return worker.applyTransforms(glyphIds);
+    }
+}
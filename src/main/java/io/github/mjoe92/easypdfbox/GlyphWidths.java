@@ -0,0 +1,344 @@
+package io.github.mjoe92.easypdfbox;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.fontbox.ttf.CmapLookup;
+import org.apache.fontbox.ttf.KerningSubtable;
+import org.apache.fontbox.ttf.KerningTable;
+import org.apache.fontbox.ttf.TrueTypeFont;
+
+/**
+ * Immutable, primitive advance width and glyph id table of a font, read from its hmtx and cmap data. All the widths
+ * are relative to the font size (1 = one em), so they must be multiplied with the font size of the text.
+ * <p>
+ * The Basic Multilingual Plane is stored in dense pages of 256 code points (only the pages having a glyph are
+ * allocated), other code points are kept in a sorted sparse table. Kerning pairs are read for the Latin range
+ * from the kern table if the font has one.
+ * <p>
+ * The tables can be written into a compact binary form and read from it without the font, see {@link FontMetrics}.
+ */
+final class GlyphWidths {
+
+    private static final int PAGE_BITS = 8;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final int BMP_PAGES = (Character.MAX_VALUE + 1) >> PAGE_BITS;
+
+    /** Code points below this limit are considered for kerning pairs. */
+    private static final int KERNING_LIMIT = 0x0250;
+
+    private final float[][] bmpPages;
+    private final char[][] bmpGlyphIdPages;
+    private final int[] supplementaryCodePoints;
+    private final float[] supplementaryWidths;
+    private final int[] supplementaryGlyphIds;
+    private final float missingWidth;
+    private final KerningPairs kerningPairs;
+
+    GlyphWidths(TrueTypeFont trueTypeFont, CmapLookup cmapLookup) throws IOException {
+        float unitsPerEm = trueTypeFont.getUnitsPerEm();
+        int numberOfGlyphs = trueTypeFont.getNumberOfGlyphs();
+
+        missingWidth = trueTypeFont.getAdvanceWidth(0) / unitsPerEm;
+        bmpPages = new float[BMP_PAGES][];
+        bmpGlyphIdPages = new char[BMP_PAGES][];
+
+        int[] codePoints = new int[16];
+        float[] widths = new float[16];
+        int[] glyphIds = new int[16];
+        int supplementaryCount = 0;
+
+        for (int glyphId = 0; glyphId < numberOfGlyphs; glyphId++) {
+            List<Integer> charCodes = cmapLookup.getCharCodes(glyphId);
+            if (charCodes == null) {
+                continue;
+            }
+
+            float width = trueTypeFont.getAdvanceWidth(glyphId) / unitsPerEm;
+            for (int codePoint : charCodes) {
+                if (codePoint <= Character.MAX_VALUE) {
+                    pageOf(codePoint)[codePoint & PAGE_MASK] = width;
+                    bmpGlyphIdPages[codePoint >> PAGE_BITS][codePoint & PAGE_MASK] = (char) glyphId;
+                } else {
+                    if (supplementaryCount == codePoints.length) {
+                        codePoints = Arrays.copyOf(codePoints, supplementaryCount * 2);
+                        widths = Arrays.copyOf(widths, supplementaryCount * 2);
+                        glyphIds = Arrays.copyOf(glyphIds, supplementaryCount * 2);
+                    }
+
+                    codePoints[supplementaryCount] = codePoint;
+                    widths[supplementaryCount] = width;
+                    glyphIds[supplementaryCount] = glyphId;
+                    supplementaryCount++;
+                }
+            }
+        }
+
+        supplementaryCodePoints = new int[supplementaryCount];
+        supplementaryWidths = new float[supplementaryCount];
+        supplementaryGlyphIds = new int[supplementaryCount];
+        sortSupplementary(codePoints, widths, glyphIds, supplementaryCount);
+
+        kerningPairs = readKerningPairs(trueTypeFont, cmapLookup, unitsPerEm);
+    }
+
+    /**
+     * Reads the tables written by {@link #write(DataOutput)}.
+     *
+     * @param input
+     *         the binary tables
+     */
+    GlyphWidths(DataInput input) throws IOException {
+        missingWidth = input.readFloat();
+        bmpPages = new float[BMP_PAGES][];
+        bmpGlyphIdPages = new char[BMP_PAGES][];
+
+        int bmpCount = input.readInt();
+        for (int index = 0; index < bmpCount; index++) {
+            int codePoint = input.readChar();
+            pageOf(codePoint)[codePoint & PAGE_MASK] = input.readFloat();
+            bmpGlyphIdPages[codePoint >> PAGE_BITS][codePoint & PAGE_MASK] = input.readChar();
+        }
+
+        int supplementaryCount = input.readInt();
+        supplementaryCodePoints = new int[supplementaryCount];
+        supplementaryWidths = new float[supplementaryCount];
+        supplementaryGlyphIds = new int[supplementaryCount];
+        for (int index = 0; index < supplementaryCount; index++) {
+            supplementaryCodePoints[index] = input.readInt();
+            supplementaryWidths[index] = input.readFloat();
+            supplementaryGlyphIds[index] = input.readChar();
+        }
+
+        kerningPairs = new KerningPairs();
+        int kerningCount = input.readInt();
+        for (int index = 0; index < kerningCount; index++) {
+            kerningPairs.put(input.readInt(), input.readFloat());
+        }
+    }
+
+    /**
+     * Writes the tables in a binary form, only the code points having a glyph are written.
+     *
+     * @param output
+     *         the output of the binary tables
+     */
+    void write(DataOutput output) throws IOException {
+        output.writeFloat(missingWidth);
+
+        int bmpCount = 0;
+        for (char[] page : bmpGlyphIdPages) {
+            for (int index = 0; page != null && index < PAGE_SIZE; index++) {
+                bmpCount += page[index] == 0 ? 0 : 1;
+            }
+        }
+
+        output.writeInt(bmpCount);
+        for (int pageIndex = 0; pageIndex < BMP_PAGES; pageIndex++) {
+            char[] page = bmpGlyphIdPages[pageIndex];
+            for (int index = 0; page != null && index < PAGE_SIZE; index++) {
+                if (page[index] != 0) {
+                    output.writeChar(pageIndex << PAGE_BITS | index);
+                    output.writeFloat(bmpPages[pageIndex][index]);
+                    output.writeChar(page[index]);
+                }
+            }
+        }
+
+        output.writeInt(supplementaryCodePoints.length);
+        for (int index = 0; index < supplementaryCodePoints.length; index++) {
+            output.writeInt(supplementaryCodePoints[index]);
+            output.writeFloat(supplementaryWidths[index]);
+            output.writeChar(supplementaryGlyphIds[index]);
+        }
+
+        kerningPairs.write(output);
+    }
+
+    /**
+     * @param codePoint
+     *         the unicode code point
+     * @return the advance width, the width of the missing glyph if the font has no glyph for the code point
+     */
+    float width(int codePoint) {
+        if (codePoint <= Character.MAX_VALUE) {
+            float[] page = bmpPages[codePoint >> PAGE_BITS];
+            return page == null ? missingWidth : page[codePoint & PAGE_MASK];
+        }
+
+        int index = Arrays.binarySearch(supplementaryCodePoints, codePoint);
+        return index < 0 ? missingWidth : supplementaryWidths[index];
+    }
+
+    /**
+     * @param codePoint
+     *         the unicode code point
+     * @return the glyph id, 0 (the missing glyph) if the font has no glyph for the code point
+     */
+    int glyphId(int codePoint) {
+        if (codePoint <= Character.MAX_VALUE) {
+            char[] page = bmpGlyphIdPages[codePoint >> PAGE_BITS];
+            return page == null ? 0 : page[codePoint & PAGE_MASK];
+        }
+
+        int index = Arrays.binarySearch(supplementaryCodePoints, codePoint);
+        return index < 0 ? 0 : supplementaryGlyphIds[index];
+    }
+
+    /**
+     * @param left
+     *         the code point on the left
+     * @param right
+     *         the code point on the right
+     * @return the kerning adjustment to add to the advance width of the left code point, 0 if none
+     */
+    float kerning(int left, int right) {
+        if (left >= KERNING_LIMIT || right >= KERNING_LIMIT) {
+            return 0;
+        }
+
+        return kerningPairs.get(left << 16 | right);
+    }
+
+    /** @return <code>true</code>, whether the font has any kerning pair */
+    boolean hasKerning() {
+        return kerningPairs.size() > 0;
+    }
+
+    private float[] pageOf(int codePoint) {
+        int pageIndex = codePoint >> PAGE_BITS;
+        float[] page = bmpPages[pageIndex];
+        if (page == null) {
+            page = new float[PAGE_SIZE];
+            Arrays.fill(page, missingWidth);
+            bmpPages[pageIndex] = page;
+            bmpGlyphIdPages[pageIndex] = new char[PAGE_SIZE];
+        }
+
+        return page;
+    }
+
+    private void sortSupplementary(int[] codePoints, float[] widths, int[] glyphIds, int count) {
+        Integer[] order = new Integer[count];
+        for (int index = 0; index < count; index++) {
+            order[index] = index;
+        }
+
+        Arrays.sort(order, (first, second) -> Integer.compare(codePoints[first], codePoints[second]));
+        for (int index = 0; index < count; index++) {
+            supplementaryCodePoints[index] = codePoints[order[index]];
+            supplementaryWidths[index] = widths[order[index]];
+            supplementaryGlyphIds[index] = glyphIds[order[index]];
+        }
+    }
+
+    private static KerningPairs readKerningPairs(TrueTypeFont trueTypeFont, CmapLookup cmapLookup, float unitsPerEm) throws IOException {
+        KerningPairs pairs = new KerningPairs();
+
+        KerningTable kerningTable = trueTypeFont.getKerning();
+        KerningSubtable subtable = kerningTable == null ? null : kerningTable.getHorizontalKerningSubtable();
+        if (subtable == null) {
+            return pairs;
+        }
+
+        int[] glyphIds = new int[KERNING_LIMIT];
+        for (int codePoint = 0; codePoint < KERNING_LIMIT; codePoint++) {
+            glyphIds[codePoint] = cmapLookup.getGlyphId(codePoint);
+        }
+
+        for (int left = 0; left < KERNING_LIMIT; left++) {
+            if (glyphIds[left] == 0) {
+                continue;
+            }
+
+            for (int right = 0; right < KERNING_LIMIT; right++) {
+                if (glyphIds[right] == 0) {
+                    continue;
+                }
+
+                int kerning = subtable.getKerning(glyphIds[left], glyphIds[right]);
+                if (kerning != 0) {
+                    pairs.put(left << 16 | right, kerning / unitsPerEm);
+                }
+            }
+        }
+
+        return pairs;
+    }
+
+    /** Open addressing hash map of primitive <code>int</code> keys (never 0) to <code>float</code> values. */
+    private static final class KerningPairs {
+
+        private int[] keys = new int[64];
+        private float[] values = new float[64];
+        private int size;
+
+        float get(int key) {
+            int mask = keys.length - 1;
+            for (int index = mix(key) & mask; keys[index] != 0; index = (index + 1) & mask) {
+                if (keys[index] == key) {
+                    return values[index];
+                }
+            }
+
+            return 0;
+        }
+
+        void put(int key, float value) {
+            if ((size + 1) * 2 > keys.length) {
+                rehash(keys.length * 2);
+            }
+
+            int mask = keys.length - 1;
+            int index = mix(key) & mask;
+            while (keys[index] != 0 && keys[index] != key) {
+                index = (index + 1) & mask;
+            }
+
+            if (keys[index] == 0) {
+                size++;
+            }
+
+            keys[index] = key;
+            values[index] = value;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void write(DataOutput output) throws IOException {
+            output.writeInt(size);
+            for (int index = 0; index < keys.length; index++) {
+                if (keys[index] != 0) {
+                    output.writeInt(keys[index]);
+                    output.writeFloat(values[index]);
+                }
+            }
+        }
+
+        private void rehash(int capacity) {
+            int[] oldKeys = keys;
+            float[] oldValues = values;
+
+            keys = new int[capacity];
+            values = new float[capacity];
+            size = 0;
+
+            for (int index = 0; index < oldKeys.length; index++) {
+                if (oldKeys[index] != 0) {
+                    put(oldKeys[index], oldValues[index]);
+                }
+            }
+        }
+
+        private static int mix(int key) {
+            int hash = key * 0x9E3779B9;
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
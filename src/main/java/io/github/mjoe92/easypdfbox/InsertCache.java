@@ -0,0 +1,259 @@
+package io.github.mjoe92.easypdfbox;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.RandomAccessStreamCache;
+import org.apache.pdfbox.multipdf.PDFMergerUtility;
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+/**
+ * Process-wide cache of parsed documents to insert, keyed by the hash of their content: the same terms and conditions
+ * or letterhead inserted into thousands of documents is parsed only once. Only the pages inserted from byte arrays
+ * and files are cached, the files are read into memory. The least recently used documents are evicted beyond the
+ * maximum size of their PDF data, a source larger than that is inserted like without the cache.
+ * <p>
+ * The cache is safe to share by the documents of all threads, see {@link EasyDocument#setInsertCache(InsertCache)}.
+ * A cached document is appended by one document at a time, since parsed documents can't be read concurrently. An
+ * evicted document is closed once no document appends it anymore.
+ * <p>
+ * The hashes of the files are kept by their path, size and modification time, so an unmodified file is read once.
+ */
+public final class InsertCache {
+
+    /** The number of file hashes kept, the least recently used are dropped beyond it. */
+    private static final int MAX_FILE_HASHES = 256;
+
+    private final long maxBytes;
+    private final Map<String, Entry> entries;
+    private final Map<Object, String> fileHashes;
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param maxBytes
+     *         the maximum size of the PDF data of the cached documents
+     */
+    public InsertCache(long maxBytes) {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("The maximum size must be positive: " + maxBytes);
+        }
+
+        this.maxBytes = maxBytes;
+        entries = new LinkedHashMap<>(16, 0.75f, true);
+        fileHashes = new LinkedHashMap<>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, String> eldest) {
+                return size() > MAX_FILE_HASHES;
+            }
+        };
+    }
+
+    /** @return the number of insertions of an already parsed document */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /** @return the number of insertions which parsed the document */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /** @return the number of documents evicted to stay within the maximum size */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /** @return the size of the PDF data of the cached documents */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /** @return the number of cached documents */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @param source
+     *         the reusable source of the pages
+     * @param key
+     *         the {@link PageSource#key() key} of the source
+     * @return the hash of the source, taken from the hashes of the files if the file is unmodified
+     */
+    String contentHash(PageSource source, Object key) throws IOException {
+        if (!(key instanceof PageSource.FileKey)) {
+            return source.contentHash();
+        }
+
+        String contentHash;
+        synchronized (this) {
+            contentHash = fileHashes.get(key);
+        }
+
+        if (contentHash == null) {
+            contentHash = source.contentHash();
+            synchronized (this) {
+                fileHashes.put(key, contentHash);
+            }
+        }
+
+        return contentHash;
+    }
+
+    /**
+     * Appends the pages of the source to the document, parsing the source only if it isn't cached yet.
+     *
+     * @param merger
+     *         the merger appending the pages
+     * @param document
+     *         the document to append the pages to
+     * @param source
+     *         the reusable source of the pages
+     * @param contentHash
+     *         the hash of the source
+     * @param streamCache
+     *         the stream cache of the document, which parses a source too large to cache
+     */
+    void append(PDFMergerUtility merger, PDDocument document, PageSource source, String contentHash,
+            RandomAccessStreamCache.StreamCacheCreateFunction streamCache) throws IOException {
+        Entry entry = acquire(contentHash);
+        if (entry == null) {
+            if (source.size() > maxBytes) {
+                // it would evict all the other entries and itself, so it's parsed within the memory budget instead
+                synchronized (this) {
+                    misses++;
+                }
+
+                try (PDDocument toAppend = source.load(streamCache)) {
+                    merger.appendDocument(document, toAppend);
+                }
+                return;
+            }
+
+            byte[] data = source.readAllBytes();
+            // the cached document outlives the inserting document, so it keeps its own memory-only stream cache
+            entry = put(contentHash, new Entry(Loader.loadPDF(data), data.length));
+        }
+
+        entry.lock.lock();
+        try {
+            merger.appendDocument(document, entry.document);
+        } finally {
+            entry.lock.unlock();
+            release(entry);
+        }
+    }
+
+    /** @return the cached entry, held until it's {@link #release(Entry) released}, null if it isn't cached */
+    private synchronized Entry acquire(String contentHash) {
+        Entry entry = entries.get(contentHash);
+        if (entry != null) {
+            hits++;
+            entry.references++;
+        }
+
+        return entry;
+    }
+
+    /**
+     * Caches the entry, evicting the least recently used entries beyond the maximum size.
+     *
+     * @return the held entry in the cache, which is the one of a concurrent miss of the same source if any
+     */
+    private Entry put(String contentHash, Entry entry) throws IOException {
+        List<Entry> closable = new ArrayList<>();
+        Entry cached;
+        synchronized (this) {
+            misses++;
+            cached = entries.putIfAbsent(contentHash, entry);
+            if (cached != null) {
+                closable.add(entry);
+            } else {
+                cached = entry;
+                bytes += entry.size;
+                var iterator = entries.values().iterator();
+                while (bytes > maxBytes && iterator.hasNext()) {
+                    Entry eldest = iterator.next();
+                    iterator.remove();
+                    bytes -= eldest.size;
+                    evictions++;
+                    // it's closed by the last document appending it
+                    eldest.evicted = true;
+                    if (eldest.references == 0) {
+                        closable.add(eldest);
+                    }
+                }
+            }
+
+            cached.references++;
+        }
+
+        try {
+            close(closable);
+        } catch (IOException e) {
+            release(cached);
+            throw e;
+        }
+
+        return cached;
+    }
+
+    private void release(Entry entry) throws IOException {
+        boolean close;
+        synchronized (this) {
+            entry.references--;
+            close = entry.evicted && entry.references == 0;
+        }
+
+        if (close) {
+            entry.document.close();
+        }
+    }
+
+    private static void close(List<Entry> entries) throws IOException {
+        IOException exception = null;
+        for (Entry entry : entries) {
+            try {
+                entry.document.close();
+            } catch (IOException e) {
+                if (exception == null) {
+                    exception = e;
+                } else {
+                    exception.addSuppressed(e);
+                }
+            }
+        }
+
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    /**
+     * A cached document. The references are the documents appending it, it's guarded by the cache. The lock is held
+     * while appending it, without pinning the carrier of a virtual thread.
+     */
+    private static final class Entry {
+
+        private final PDDocument document;
+        private final long size;
+        private final ReentrantLock lock;
+        private int references;
+        private boolean evicted;
+
+        Entry(PDDocument document, long size) {
+            this.document = document;
+            this.size = size;
+            lock = new ReentrantLock();
+        }
+    }
+}
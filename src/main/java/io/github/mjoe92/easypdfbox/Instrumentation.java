@@ -0,0 +1,91 @@
+package io.github.mjoe92.easypdfbox;
+
+/**
+ * Receives the timings and counters of converting an {@link EasyDocument}, e.g. to feed a metrics pipeline, see
+ * {@link EasyDocument#setInstrumentation(Instrumentation)}. The methods are called on the thread converting the
+ * document, once it's written. All the methods do nothing by default.
+ * <p>
+ * The phases are only measured while an instrumentation is set or a Flight Recorder recording of the phases is
+ * running, the text added before is not measured. The allocated bytes are those of the threads of the document,
+ * read from {@link com.sun.management.ThreadMXBean}, 0 where the JVM doesn't measure them.
+ * <p>
+ * Independent of the instrumentation, the same data is recorded as JDK Flight Recorder events
+ * (<code>io.github.mjoe92.easypdfbox.Phase</code> and <code>io.github.mjoe92.easypdfbox.Convert</code>), when a
+ * recording is running.
+ */
+public interface Instrumentation {
+
+    /** The instrumentation doing nothing, the default. */
+    Instrumentation NONE = new Instrumentation() { };
+
+    /**
+     * Called for every phase of the conversion, with the total time spent in it, also for phases which didn't run.
+     *
+     * @param phase
+     *         the phase
+     * @param nanos
+     *         the time spent in the phase
+     */
+    default void phaseCompleted(Phase phase, long nanos) { }
+
+    /**
+     * Called for every phase of the conversion, with the total time spent and bytes allocated in it, also for phases
+     * which didn't run. Calls {@link #phaseCompleted(Phase, long)} by default.
+     *
+     * @param phase
+     *         the phase
+     * @param nanos
+     *         the time spent in the phase
+     * @param allocatedBytes
+     *         the bytes allocated on the heap in the phase
+     */
+    default void phaseCompleted(Phase phase, long nanos, long allocatedBytes) {
+        phaseCompleted(phase, nanos);
+    }
+
+    /**
+     * Called once the document is written.
+     *
+     * @param summary
+     *         the counters of the conversion
+     */
+    default void converted(Summary summary) { }
+
+    /** The phases of creating a document, in their typical order. */
+    enum Phase {
+        /** Loading the fonts from the registry, and into the document once a page refers to them. */
+        FONT_LOAD,
+        /** Measuring and wrapping the added text into lines. */
+        WRAP,
+        /** Laying out the lines into pages. */
+        LAYOUT,
+        /** Writing the content of the pages (in parallel) and adding them to the document. */
+        WRITE_PAGES,
+        /** Inserting the pages of other documents. */
+        MERGE,
+        /** Subsetting the fonts to the written glyphs. */
+        SUBSET,
+        /** Saving the document into the output. */
+        SAVE
+    }
+
+    /**
+     * @param pages
+     *         the number of pages of the document, including the inserted pages
+     * @param lines
+     *         the number of laid out lines
+     * @param glyphs
+     *         the number of written glyphs
+     * @param contentBytes
+     *         the compressed size of the content of the laid out pages
+     * @param mergedPages
+     *         the number of inserted pages
+     * @param outputBytes
+     *         the size of the written document
+     * @param allocatedBytes
+     *         the bytes allocated on the heap to convert the document, including the pages written in parallel
+     * @param nanos
+     *         the time to convert the document, the text added before converting excluded
+     */
+    record Summary(int pages, int lines, long glyphs, long contentBytes, int mergedPages, long outputBytes, long allocatedBytes, long nanos) { }
+}
@@ -0,0 +1,255 @@
+package io.github.mjoe92.easypdfbox;
+
+/**
+ * The line breaking engine: wraps text in a single forward pass by tracking the last break opportunity and the
+ * running line width, without copying any part of the text.
+ * <p>
+ * Lines break at \n, after spaces and tabs and after hyphens. Non-breaking spaces and hyphens (e.g. U+00A0, U+2011)
+ * never break, words longer than the available width are broken at the last fitting code point. Surrogate pairs are
+ * measured and kept as one code point.
+ * <p>
+ * Text of several runs in different fonts is wrapped in the same pass, lines break across the run boundaries. Every
+ * run is written with its own text operator, so kerning is not measured across the boundaries. The lines get a
+ * fragment per run with its width, taken from the positions of the run boundaries measured in the pass.
+ */
+final class LineBreaker {
+
+    /** The tab is measured (and later written) as this number of spaces. */
+    static final int TAB_SIZE = 4;
+
+    private LineBreaker() { }
+
+    /**
+     * Wraps the range of the text and adds its lines to the ranges. Trailing spaces at soft breaks are excluded from
+     * the lines, as are the leading spaces of the continuation lines. Like {@link String#split(String)}, empty
+     * lines at the end of the text are dropped.
+     *
+     * @param text
+     *         the text
+     * @param from
+     *         the index of the first char to wrap
+     * @param to
+     *         the index after the last char to wrap
+     * @param widths
+     *         the glyph widths of the font
+     * @param fontSize
+     *         the font size
+     * @param kerning
+     *         <code>true</code>, whether the kerning pairs are measured
+     * @param maxWidth
+     *         the available width of a line
+     * @param ranges
+     *         the ranges to add the lines to
+     */
+    static void wrap(CharSequence text, int from, int to, GlyphWidths widths, float fontSize, boolean kerning, float maxWidth, LineRanges ranges) {
+        wrap(text, from, to, widths, null, null, fontSize, kerning, maxWidth, ranges);
+    }
+
+    /**
+     * Wraps the text of consecutive runs in different fonts and adds its lines with their fragments to the ranges,
+     * like {@link #wrap(CharSequence, int, int, GlyphWidths, float, boolean, float, LineRanges)}. Empty runs get no
+     * fragment, unless an empty line is part of them.
+     *
+     * @param text
+     *         the text of all the runs
+     * @param runEnds
+     *         the index after the last char of every run, the last one is the length of the text
+     * @param runWidths
+     *         the glyph widths of the font of every run
+     * @param fontSize
+     *         the font size
+     * @param kerning
+     *         <code>true</code>, whether the kerning pairs are measured
+     * @param maxWidth
+     *         the available width of a line
+     * @param ranges
+     *         the ranges to add the lines to
+     */
+    static void wrap(CharSequence text, int[] runEnds, GlyphWidths[] runWidths, float fontSize, boolean kerning, float maxWidth, LineRanges ranges) {
+        wrap(text, 0, text.length(), runWidths[0], runEnds, runWidths, fontSize, kerning, maxWidth, ranges);
+    }
+
+    private static void wrap(CharSequence text, int from, int to, GlyphWidths widths, int[] runEnds, GlyphWidths[] runWidths, float fontSize,
+            boolean kerning, float maxWidth, LineRanges ranges) {
+        int linesBefore = ranges.size();
+
+        int lineStart = from;
+        float lineWidth = 0;
+        // the x position of the line start and of the run ends since the start of the text, for the fragment widths
+        float lineStartX = 0;
+        float[] runEndXs = runEnds == null ? null : new float[runEnds.length];
+        int fragmentRun = 0;
+        // the last break opportunity: the line ends at breakEnd and the next one starts at breakNext
+        int breakEnd = -1;
+        int breakNext = -1;
+        float widthAtBreakEnd = 0;
+        float widthAtBreakNext = 0;
+        int previous = -1;
+        int run = 0;
+        int runStart = from;
+        int runEnd = runEnds == null ? to : runEnds[0];
+
+        int index = from;
+        while (index < to) {
+            while (index >= runEnd) {
+                runEndXs[run] = lineStartX + lineWidth;
+                run++;
+                runStart = runEnd;
+                runEnd = runEnds[run];
+                widths = runWidths[run];
+            }
+
+            int codePoint = Character.codePointAt(text, index);
+            int next = index + Character.charCount(codePoint);
+
+            if (codePoint == '\n') {
+                int end = index > lineStart && text.charAt(index - 1) == '\r' ? index - 1 : index;
+                fragmentRun = addLine(ranges, lineStart, end, lineStartX, lineWidth, runEnds, runEndXs, fragmentRun);
+
+                lineStart = next;
+                lineStartX += lineWidth;
+                lineWidth = 0;
+                breakNext = -1;
+                previous = -1;
+                index = next;
+                continue;
+            }
+
+            float width = measure(index == runStart ? -1 : previous, codePoint, widths, kerning) * fontSize;
+
+            if (isBreakingSpace(codePoint)) {
+                // spaces may hang over the edge, they are never written at the end of a wrapped line
+                if (breakNext != index) {
+                    breakEnd = index;
+                    widthAtBreakEnd = lineWidth;
+                }
+
+                lineWidth += width;
+                breakNext = next;
+                widthAtBreakNext = lineWidth;
+            } else {
+                if (lineWidth + width > maxWidth && index > lineStart) {
+                    if (breakNext > lineStart && breakNext <= index) {
+                        // leading spaces only are skipped, instead of an empty line
+                        if (breakEnd > lineStart) {
+                            fragmentRun = addLine(ranges, lineStart, breakEnd, lineStartX, widthAtBreakEnd, runEnds, runEndXs, fragmentRun);
+                        }
+
+                        lineStart = breakNext;
+                        lineStartX += widthAtBreakNext;
+                        lineWidth -= widthAtBreakNext;
+                    }
+
+                    if (lineWidth + width > maxWidth && index > lineStart) {
+                        // over-long word: break it at the last fitting code point
+                        fragmentRun = addLine(ranges, lineStart, index, lineStartX, lineWidth, runEnds, runEndXs, fragmentRun);
+
+                        lineStart = index;
+                        lineStartX += lineWidth;
+                        lineWidth = 0;
+                    }
+
+                    breakNext = -1;
+                    if (lineStart == index) {
+                        width = measure(-1, codePoint, widths, kerning) * fontSize;
+                    }
+                }
+
+                lineWidth += width;
+
+                if (isBreakingHyphen(codePoint) && previous != -1 && !isBreakingSpace(previous)) {
+                    breakEnd = next;
+                    breakNext = next;
+                    widthAtBreakEnd = lineWidth;
+                    widthAtBreakNext = lineWidth;
+                }
+            }
+
+            previous = codePoint;
+            index = next;
+        }
+
+        if (lineStart < to || ranges.size() == linesBefore) {
+            addLine(ranges, lineStart, to, lineStartX, lineWidth, runEnds, runEndXs, fragmentRun);
+        } else {
+            while (ranges.size() > linesBefore + 1 && ranges.start(ranges.size() - 1) == ranges.end(ranges.size() - 1)) {
+                ranges.removeLast();
+            }
+        }
+    }
+
+    /**
+     * Adds a line to the ranges, after its fragments if the text has runs.
+     *
+     * @param lineStartX
+     *         the x position of the line start since the start of the text
+     * @param runEndXs
+     *         the x positions of the run ends passed so far
+     * @param run
+     *         the run of the previous line start, the runs only move forward
+     * @return the run of the line start
+     */
+    private static int addLine(LineRanges ranges, int lineStart, int lineEnd, float lineStartX, float lineWidth, int[] runEnds, float[] runEndXs,
+            int run) {
+        if (runEnds != null) {
+            while (run < runEnds.length - 1 && runEnds[run] <= lineStart) {
+                run++;
+            }
+
+            int lineRun = run;
+            int fragmentStart = lineStart;
+            float fragmentStartX = lineStartX;
+            boolean empty = true;
+            do {
+                int fragmentEnd = Math.min(runEnds[lineRun], lineEnd);
+                float fragmentEndX = fragmentEnd == lineEnd ? lineStartX + lineWidth : runEndXs[lineRun];
+                // empty runs are skipped, an empty line keeps a fragment of its run
+                if (fragmentEnd > fragmentStart || empty && fragmentEnd == lineEnd) {
+                    ranges.addFragment(lineRun, fragmentEnd - fragmentStart, fragmentEndX - fragmentStartX);
+                    empty = false;
+                }
+
+                if (fragmentEnd < lineEnd) {
+                    lineRun++;
+                }
+                fragmentStart = fragmentEnd;
+                fragmentStartX = fragmentEndX;
+            } while (fragmentStart < lineEnd);
+        }
+
+        ranges.add(lineStart, lineEnd, lineWidth);
+        return run;
+    }
+
+    /**
+     * @param previous
+     *         the code point before, -1 if none
+     * @param codePoint
+     *         the code point to measure
+     * @param widths
+     *         the glyph widths of the font
+     * @param kerning
+     *         <code>true</code>, whether the kerning with the previous code point is measured
+     * @return the width relative to the font size
+     */
+    static float measure(int previous, int codePoint, GlyphWidths widths, boolean kerning) {
+        if (codePoint == '\t') {
+            return TAB_SIZE * widths.width(' ');
+        }
+
+        float width = widths.width(codePoint);
+        if (kerning && previous != -1) {
+            width += widths.kerning(previous, codePoint);
+        }
+
+        return width;
+    }
+
+    private static boolean isBreakingSpace(int codePoint) {
+        return codePoint == ' ' || codePoint == '\t';
+    }
+
+    private static boolean isBreakingHyphen(int codePoint) {
+        return codePoint == '-' || codePoint == '\u2010';
+    }
+}
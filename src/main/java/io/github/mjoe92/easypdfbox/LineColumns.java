@@ -0,0 +1,307 @@
+package io.github.mjoe92.easypdfbox;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Columnar storage of lines of text: the attributes of every line are kept in primitive arrays, so no object is
+ * created per line. The text of a line is a range of a chunk of the {@link TextStore}, its fragments are rows of
+ * fragment columns (the style index, the number of chars and the advance), which follow each other in the order of
+ * the lines. A line of the same store is copied by its indexes, sharing its chars.
+ * <p>
+ * Lines without text (new lines, page breaks, insertion points) only have a type.
+ */
+final class LineColumns {
+
+    private static final TextType[] TYPES = TextType.values();
+    private static final int NO_TEXT = -1;
+
+    private final TextStore store;
+
+    private byte[] types;
+    private float[] xStarts;
+    private float[] widths;
+    private int[] chunks;
+    private int[] starts;
+    private int[] ends;
+    /** The index after the last fragment of the line, the fragments of a line start after those of the previous one. */
+    private int[] fragmentEnds;
+    private int size;
+
+    private int[] fragmentStyles;
+    private int[] fragmentLengths;
+    private float[] fragmentAdvances;
+    private int fragmentCount;
+
+    /**
+     * @param store
+     *         the chars and styles of the lines, shared with the columns the lines are copied from or into
+     */
+    LineColumns(TextStore store) {
+        this(store, 64);
+    }
+
+    private LineColumns(TextStore store, int capacity) {
+        this.store = store;
+        types = new byte[capacity];
+        xStarts = new float[capacity];
+        widths = new float[capacity];
+        chunks = new int[capacity];
+        starts = new int[capacity];
+        ends = new int[capacity];
+        fragmentEnds = new int[capacity];
+        fragmentStyles = new int[capacity];
+        fragmentLengths = new int[capacity];
+        fragmentAdvances = new float[capacity];
+    }
+
+    TextStore store() {
+        return store;
+    }
+
+    /** @return the number of lines */
+    int size() {
+        return size;
+    }
+
+    /** @return the text type of the line */
+    TextType type(int line) {
+        return TYPES[types[line]];
+    }
+
+    /** @return the x position of the line start */
+    float xStart(int line) {
+        return xStarts[line];
+    }
+
+    /** @return the measured width of the line, NaN if not known */
+    float width(int line) {
+        return widths[line];
+    }
+
+    /** @return <code>true</code>, whether the line has text, which is written */
+    boolean hasText(int line) {
+        return chunks[line] != NO_TEXT;
+    }
+
+    /** @return the chars containing the line from {@link #start(int)} to {@link #end(int)}, null for lines without text */
+    CharSequence chars(int line) {
+        return hasText(line) ? store.chunk(chunks[line]) : null;
+    }
+
+    /** @return the index of the first char of the line in {@link #chars(int)} */
+    int start(int line) {
+        return starts[line];
+    }
+
+    /** @return the index after the last char of the line in {@link #chars(int)} */
+    int end(int line) {
+        return ends[line];
+    }
+
+    /** @return the text of the line, null for lines without text */
+    String text(int line) {
+        return hasText(line) ? chars(line).subSequence(starts[line], ends[line]).toString() : null;
+    }
+
+    /** @return the index of the first fragment of the line */
+    int firstFragment(int line) {
+        return line == 0 ? 0 : fragmentEnds[line - 1];
+    }
+
+    /** @return the index after the last fragment of the line */
+    int fragmentEnd(int line) {
+        return fragmentEnds[line];
+    }
+
+    /** @return the number of chars of the fragment, the last fragment of a line covers the rest of the line anyway */
+    int fragmentLength(int fragment) {
+        return fragmentLengths[fragment];
+    }
+
+    RegisteredFont fragmentFont(int fragment) {
+        return store.font(fragmentStyles[fragment]);
+    }
+
+    boolean fragmentUnderlined(int fragment) {
+        return store.underlined(fragmentStyles[fragment]);
+    }
+
+    /** @return the width of the written fragment in text space units, NaN to measure it when written */
+    float fragmentAdvance(int fragment) {
+        return fragmentAdvances[fragment];
+    }
+
+    /** Adds a line without text. */
+    void add(TextType type) {
+        addLine(type, 0, Float.NaN, NO_TEXT, 0, 0);
+    }
+
+    /**
+     * Adds a line in one style from the range of the char sequence, the chars are appended to the store.
+     *
+     * @param text
+     *         the text
+     * @param start
+     *         the index of the first char of the line
+     * @param end
+     *         the index after the last char of the line
+     * @param xStart
+     *         the x position of the line start
+     * @param type
+     *         the text type
+     * @param fontFragment
+     *         the style of the whole line
+     * @param width
+     *         the measured width of the line, NaN if not known
+     */
+    void add(CharSequence text, int start, int end, float xStart, TextType type, FontFragment fontFragment, float width) {
+        addFragment(store.style(fontFragment.font(), fontFragment.underlined()), 0, Float.NaN);
+        addText(text, start, end, xStart, type, width);
+    }
+
+    /**
+     * Adds a line of fragments in different styles from the range of the char sequence, the chars are appended to the
+     * store.
+     *
+     * @param text
+     *         the text
+     * @param start
+     *         the index of the first char of the line
+     * @param end
+     *         the index after the last char of the line
+     * @param xStart
+     *         the x position of the line start
+     * @param type
+     *         the text type
+     * @param fontFragments
+     *         the fragments of the line, one after another
+     * @param advances
+     *         the width of every fragment in text space units, NaN to measure it when written
+     */
+    void add(CharSequence text, int start, int end, float xStart, TextType type, List<FontFragment> fontFragments, float[] advances) {
+        for (int index = 0; index < fontFragments.size(); index++) {
+            FontFragment fontFragment = fontFragments.get(index);
+            addFragment(store.style(fontFragment.font(), fontFragment.underlined()), fontFragment.width(), advances[index]);
+        }
+
+        addText(text, start, end, xStart, type, Float.NaN);
+    }
+
+    /**
+     * Adds a line of other columns. The chars and styles of the same store are shared, otherwise they are copied.
+     *
+     * @param other
+     *         the columns to add the line from
+     * @param line
+     *         the index of the line
+     */
+    void add(LineColumns other, int line) {
+        for (int fragment = other.firstFragment(line); fragment < other.fragmentEnds[line]; fragment++) {
+            int style = other.store == store ? other.fragmentStyles[fragment] : store.style(other.fragmentFont(fragment), other.fragmentUnderlined(fragment));
+            addFragment(style, other.fragmentLengths[fragment], other.fragmentAdvances[fragment]);
+        }
+
+        if (!other.hasText(line)) {
+            addLine(other.type(line), other.xStarts[line], other.widths[line], NO_TEXT, 0, 0);
+        } else if (other.store == store) {
+            addLine(other.type(line), other.xStarts[line], other.widths[line], other.chunks[line], other.starts[line], other.ends[line]);
+        } else {
+            addText(other.chars(line), other.starts[line], other.ends[line], other.xStarts[line], other.type(line), other.widths[line]);
+        }
+    }
+
+    /** Removes the first lines and their fragments, the following lines move to the front. */
+    void removeFirst(int count) {
+        int remaining = size - count;
+        int removedFragments = firstFragment(count);
+        System.arraycopy(types, count, types, 0, remaining);
+        System.arraycopy(xStarts, count, xStarts, 0, remaining);
+        System.arraycopy(widths, count, widths, 0, remaining);
+        System.arraycopy(chunks, count, chunks, 0, remaining);
+        System.arraycopy(starts, count, starts, 0, remaining);
+        System.arraycopy(ends, count, ends, 0, remaining);
+        for (int line = 0; line < remaining; line++) {
+            fragmentEnds[line] = fragmentEnds[line + count] - removedFragments;
+        }
+
+        int remainingFragments = fragmentCount - removedFragments;
+        System.arraycopy(fragmentStyles, removedFragments, fragmentStyles, 0, remainingFragments);
+        System.arraycopy(fragmentLengths, removedFragments, fragmentLengths, 0, remainingFragments);
+        System.arraycopy(fragmentAdvances, removedFragments, fragmentAdvances, 0, remainingFragments);
+
+        size = remaining;
+        fragmentCount = remainingFragments;
+    }
+
+    /** Drops the chunks of the store before the first line, no other columns may refer to them anymore. */
+    void releaseChunks() {
+        for (int line = 0; line < size; line++) {
+            if (hasText(line)) {
+                // the lines are appended in order, the first line has the first chunk still used
+                store.release(chunks[line]);
+                return;
+            }
+        }
+
+        store.release(store.lastChunk());
+    }
+
+    /** Removes all the lines and clears the store, no other columns may refer to its chars and styles anymore. */
+    void clear() {
+        size = 0;
+        fragmentCount = 0;
+        store.clear();
+    }
+
+    /** @return a copy of the lines from the given one, with a store of their own */
+    LineColumns copyFrom(int line) {
+        LineColumns copy = new LineColumns(new TextStore(), Math.max(1, size - line));
+        for (int index = line; index < size; index++) {
+            copy.add(this, index);
+        }
+
+        return copy;
+    }
+
+    private void addText(CharSequence text, int start, int end, float xStart, TextType type, float width) {
+        int chunkStart = store.append(text, start, end);
+        addLine(type, xStart, width, store.lastChunk(), chunkStart, store.lastChunkEnd());
+    }
+
+    private void addFragment(int style, int length, float advance) {
+        if (fragmentCount == fragmentStyles.length) {
+            int capacity = Math.max(16, fragmentCount * 2);
+            fragmentStyles = Arrays.copyOf(fragmentStyles, capacity);
+            fragmentLengths = Arrays.copyOf(fragmentLengths, capacity);
+            fragmentAdvances = Arrays.copyOf(fragmentAdvances, capacity);
+        }
+
+        fragmentStyles[fragmentCount] = style;
+        fragmentLengths[fragmentCount] = length;
+        fragmentAdvances[fragmentCount] = advance;
+        fragmentCount++;
+    }
+
+    private void addLine(TextType type, float xStart, float width, int chunk, int start, int end) {
+        if (size == types.length) {
+            int capacity = Math.max(16, size * 2);
+            types = Arrays.copyOf(types, capacity);
+            xStarts = Arrays.copyOf(xStarts, capacity);
+            widths = Arrays.copyOf(widths, capacity);
+            chunks = Arrays.copyOf(chunks, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            fragmentEnds = Arrays.copyOf(fragmentEnds, capacity);
+        }
+
+        types[size] = (byte) type.ordinal();
+        xStarts[size] = xStart;
+        widths[size] = width;
+        chunks[size] = chunk;
+        starts[size] = start;
+        ends[size] = end;
+        fragmentEnds[size] = fragmentCount;
+        size++;
+    }
+}
@@ -0,0 +1,138 @@
+package io.github.mjoe92.easypdfbox;
+
+import java.util.Arrays;
+
+/**
+ * Reusable, growable result of the {@link LineBreaker}: the lines are index ranges into the source text together
+ * with their measured width, so no string is copied while wrapping.
+ * <p>
+ * The lines of text of several runs also have fragments, one per run they contain: the run, its number of chars in
+ * the line and its measured width, so the fragments are positioned without measuring them again.
+ */
+final class LineRanges {
+
+    private int[] starts;
+    private int[] ends;
+    private float[] widths;
+    /** The index after the last fragment of the line, the fragments of a line start after those of the previous one. */
+    private int[] fragmentEnds;
+    private int size;
+
+    private int[] fragmentRuns;
+    private int[] fragmentLengths;
+    private float[] fragmentWidths;
+    private int fragmentCount;
+
+    LineRanges() {
+        this(16);
+    }
+
+    LineRanges(int capacity) {
+        starts = new int[capacity];
+        ends = new int[capacity];
+        widths = new float[capacity];
+        fragmentEnds = new int[capacity];
+        fragmentRuns = new int[0];
+        fragmentLengths = new int[0];
+        fragmentWidths = new float[0];
+    }
+
+    /** @return the number of lines */
+    int size() {
+        return size;
+    }
+
+    /** @return the index of the first char of the line */
+    int start(int line) {
+        return starts[line];
+    }
+
+    /** @return the index after the last char of the line */
+    int end(int line) {
+        return ends[line];
+    }
+
+    /** @return the width of the line in text space units */
+    float width(int line) {
+        return widths[line];
+    }
+
+    /** @return the index of the first fragment of the line */
+    int firstFragment(int line) {
+        return line == 0 ? 0 : fragmentEnds[line - 1];
+    }
+
+    /** @return the index after the last fragment of the line, no fragment at all for the text of a single run */
+    int fragmentEnd(int line) {
+        return fragmentEnds[line];
+    }
+
+    /** @return the index of the run of the fragment */
+    int fragmentRun(int fragment) {
+        return fragmentRuns[fragment];
+    }
+
+    /** @return the number of chars of the fragment */
+    int fragmentLength(int fragment) {
+        return fragmentLengths[fragment];
+    }
+
+    /** @return the width of the fragment in text space units */
+    float fragmentWidth(int fragment) {
+        return fragmentWidths[fragment];
+    }
+
+    /** Adds a line, after its fragments if any. */
+    void add(int start, int end, float width) {
+        if (size == starts.length) {
+            int capacity = size * 2;
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            widths = Arrays.copyOf(widths, capacity);
+            fragmentEnds = Arrays.copyOf(fragmentEnds, capacity);
+        }
+
+        starts[size] = start;
+        ends[size] = end;
+        widths[size] = width;
+        fragmentEnds[size] = fragmentCount;
+        size++;
+    }
+
+    /** Adds a fragment of the next line. */
+    void addFragment(int run, int length, float width) {
+        if (fragmentCount == fragmentRuns.length) {
+            int capacity = Math.max(8, fragmentCount * 2);
+            fragmentRuns = Arrays.copyOf(fragmentRuns, capacity);
+            fragmentLengths = Arrays.copyOf(fragmentLengths, capacity);
+            fragmentWidths = Arrays.copyOf(fragmentWidths, capacity);
+        }
+
+        fragmentRuns[fragmentCount] = run;
+        fragmentLengths[fragmentCount] = length;
+        fragmentWidths[fragmentCount] = width;
+        fragmentCount++;
+    }
+
+    /** Adds all the lines of the other ranges with their fragments. */
+    void addAll(LineRanges other) {
+        for (int line = 0; line < other.size; line++) {
+            for (int fragment = other.firstFragment(line); fragment < other.fragmentEnds[line]; fragment++) {
+                addFragment(other.fragmentRuns[fragment], other.fragmentLengths[fragment], other.fragmentWidths[fragment]);
+            }
+
+            add(other.starts[line], other.ends[line], other.widths[line]);
+        }
+    }
+
+    /** Removes the last line and its fragments. */
+    void removeLast() {
+        size--;
+        fragmentCount = firstFragment(size);
+    }
+
+    void clear() {
+        size = 0;
+        fragmentCount = 0;
+    }
+}
@@ -0,0 +1,113 @@
+package io.github.mjoe92.easypdfbox;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.io.RandomAccessStreamCache;
+import org.apache.pdfbox.io.ScratchFile;
+
+/**
+ * The memory budget of the PDF documents of an {@link EasyDocument}: the generated document and every document
+ * inserted with <code>addNewPages</code> get their own stream cache with these limits.
+ * <p>
+ * Above the main memory limit, the streams spill into a scratch file in the temp directory, which can grow up to
+ * the scratch limit. The actual usage can be observed with {@link EasyDocument#getMemoryMetrics()}, if the budget is
+ * metered: the default budget isn't, see {@link #withMetrics()}.
+ *
+ * @param maxMainMemoryBytes
+ *         the maximum bytes of streams kept on the heap per document, -1 for unrestricted
+ * @param tempDirectory
+ *         the directory of the scratch files, <code>null</code> for the default temp directory
+ * @param maxScratchBytes
+ *         the maximum bytes of a scratch file, -1 for unrestricted, 0 to never spill to disk
+ * @param metered
+ *         <code>true</code>, whether the usage of the stream caches is reported to the {@link MemoryMetrics}
+ */
+public record MemoryBudget(long maxMainMemoryBytes, Path tempDirectory, long maxScratchBytes, boolean metered) {
+
+    private static final MemoryBudget MAIN_MEMORY_ONLY = new MemoryBudget(-1, null, 0, false);
+
+    public MemoryBudget {
+        if (maxMainMemoryBytes < -1 || maxScratchBytes < -1) {
+            throw new IllegalArgumentException("Memory limits must be -1 (unrestricted) or non-negative");
+        }
+
+        if (maxMainMemoryBytes == -1 && maxScratchBytes != 0) {
+            throw new IllegalArgumentException("The main memory must be restricted to use a scratch file");
+        }
+    }
+
+    /**
+     * A metered budget.
+     *
+     * @param maxMainMemoryBytes
+     *         the maximum bytes of streams kept on the heap per document, -1 for unrestricted
+     * @param tempDirectory
+     *         the directory of the scratch files, <code>null</code> for the default temp directory
+     * @param maxScratchBytes
+     *         the maximum bytes of a scratch file, -1 for unrestricted, 0 to never spill to disk
+     */
+    public MemoryBudget(long maxMainMemoryBytes, Path tempDirectory, long maxScratchBytes) {
+        this(maxMainMemoryBytes, tempDirectory, maxScratchBytes, true);
+    }
+
+    /** @return the default budget: all the streams are kept on the heap without any limit, and they aren't metered */
+    public static MemoryBudget mainMemoryOnly() {
+        return MAIN_MEMORY_ONLY;
+    }
+
+    /**
+     * @param maxMainMemoryBytes
+     *         the maximum bytes of streams kept on the heap per document
+     * @param tempDirectory
+     *         the directory of the scratch files, <code>null</code> for the default temp directory
+     * @return the budget which spills into an unrestricted scratch file above the main memory limit
+     */
+    public static MemoryBudget mixed(long maxMainMemoryBytes, Path tempDirectory) {
+        return new MemoryBudget(maxMainMemoryBytes, tempDirectory, -1);
+    }
+
+    /** @return the same budget, reporting the usage of the stream caches to the {@link MemoryMetrics} */
+    public MemoryBudget withMetrics() {
+        return new MemoryBudget(maxMainMemoryBytes, tempDirectory, maxScratchBytes, true);
+    }
+
+    /** @return <code>true</code>, whether the streams may spill into a scratch file */
+    public boolean usesScratchFile() {
+        return maxScratchBytes != 0;
+    }
+
+    /**
+     * @param metrics
+     *         the metrics to report the usage of the created caches to
+     * @return the function creating the stream cache of a document
+     */
+    RandomAccessStreamCache.StreamCacheCreateFunction toStreamCache(MemoryMetrics metrics) {
+        RandomAccessStreamCache.StreamCacheCreateFunction streamCache = maxMainMemoryBytes == -1 ? IOUtils.createMemoryOnlyStreamCache()
+                : this::createScratchFile;
+        if (!metered) {
+            return streamCache;
+        }
+
+        return () -> new MeteredStreamCache(streamCache.create(), maxMainMemoryBytes, metrics);
+    }
+
+    private ScratchFile createScratchFile() throws IOException {
+        MemoryUsageSetting setting;
+        if (maxScratchBytes == 0) {
+            setting = MemoryUsageSetting.setupMainMemoryOnly(maxMainMemoryBytes);
+        } else if (maxScratchBytes == -1) {
+            setting = MemoryUsageSetting.setupMixed(maxMainMemoryBytes);
+        } else {
+            setting = MemoryUsageSetting.setupMixed(maxMainMemoryBytes, maxMainMemoryBytes + maxScratchBytes);
+        }
+
+        if (tempDirectory != null) {
+            setting.setTempDir(tempDirectory.toFile());
+        }
+
+        return new ScratchFile(setting);
+    }
+}
@@ -0,0 +1,70 @@
+package io.github.mjoe92.easypdfbox;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The stream cache usage of the PDF documents of an {@link EasyDocument} under its {@link MemoryBudget}, to size the
+ * memory of the process.
+ */
+public final class MemoryMetrics {
+
+    private final AtomicLong bufferedBytes = new AtomicLong();
+    private final AtomicLong peakBufferedBytes = new AtomicLong();
+    private final AtomicLong spilledBytes = new AtomicLong();
+    private final AtomicInteger caches = new AtomicInteger();
+    private final AtomicInteger spilledCaches = new AtomicInteger();
+
+    /** @return the bytes currently held by the stream caches of the documents */
+    public long getBufferedBytes() {
+        return bufferedBytes.get();
+    }
+
+    /** @return the maximum of the bytes held at the same time by the stream caches of the documents */
+    public long getPeakBufferedBytes() {
+        return peakBufferedBytes.get();
+    }
+
+    /** @return the bytes (at peak) that exceeded the main memory limit, so they were written into scratch files */
+    public long getSpilledBytes() {
+        return spilledBytes.get();
+    }
+
+    /** @return the number of created stream caches: one for the generated and one for every inserted document */
+    public int getCaches() {
+        return caches.get();
+    }
+
+    /** @return the number of stream caches which exceeded the main memory limit */
+    public int getSpilledCaches() {
+        return spilledCaches.get();
+    }
+
+    /** @return <code>true</code>, whether any stream cache spilled to disk */
+    public boolean hasSpilled() {
+        return spilledCaches.get() > 0;
+    }
+
+    void cacheCreated() {
+        caches.incrementAndGet();
+    }
+
+    void cacheSpilled() {
+        spilledCaches.incrementAndGet();
+    }
+
+    void buffered(long delta) {
+        long current = bufferedBytes.addAndGet(delta);
+        peakBufferedBytes.accumulateAndGet(current, Math::max);
+    }
+
+    void spilled(long delta) {
+        spilledBytes.addAndGet(delta);
+    }
+
+    @Override
+    public String toString() {
+        return "MemoryMetrics[bufferedBytes=" + getBufferedBytes() + ", peakBufferedBytes=" + getPeakBufferedBytes()
+                + ", spilledBytes=" + getSpilledBytes() + ", caches=" + getCaches() + ", spilledCaches=" + getSpilledCaches() + "]";
+    }
+}
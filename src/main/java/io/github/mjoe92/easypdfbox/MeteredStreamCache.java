@@ -0,0 +1,203 @@
+package io.github.mjoe92.easypdfbox;
+
+import java.io.IOException;
+
+import org.apache.pdfbox.io.RandomAccess;
+import org.apache.pdfbox.io.RandomAccessReadView;
+import org.apache.pdfbox.io.RandomAccessStreamCache;
+
+/**
+ * Stream cache reporting the size of its buffers to the {@link MemoryMetrics}. The bytes above the main memory limit
+ * are reported as spilled, since the underlying scratch file writes them to disk.
+ * <p>
+ * A buffer reports its length after about a chunk of the underlying buffers was written, and when it's cleared,
+ * sought or closed, so the metrics are not updated for every write.
+ */
+final class MeteredStreamCache implements RandomAccessStreamCache {
+
+    /** The bytes written before the length of a buffer is reported, the chunk or page size of the PDFBox buffers. */
+    private static final int REPORT_BYTES = 4096;
+
+    private final RandomAccessStreamCache delegate;
+    private final long maxMainMemoryBytes;
+    private final MemoryMetrics metrics;
+
+    private long bufferedBytes;
+    private long peakBufferedBytes;
+    private boolean closed;
+
+    MeteredStreamCache(RandomAccessStreamCache delegate, long maxMainMemoryBytes, MemoryMetrics metrics) {
+        this.delegate = delegate;
+        this.maxMainMemoryBytes = maxMainMemoryBytes;
+        this.metrics = metrics;
+
+        metrics.cacheCreated();
+    }
+
+    @Override
+    public RandomAccess createBuffer() throws IOException {
+        return new MeteredBuffer(delegate.createBuffer());
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            metrics.buffered(-bufferedBytes);
+            bufferedBytes = 0;
+        }
+
+        delegate.close();
+    }
+
+    private synchronized void resized(long delta) {
+        if (closed || delta == 0) {
+            return;
+        }
+
+        bufferedBytes += delta;
+        metrics.buffered(delta);
+
+        if (bufferedBytes > peakBufferedBytes) {
+            if (maxMainMemoryBytes != -1 && bufferedBytes > maxMainMemoryBytes) {
+                if (peakBufferedBytes <= maxMainMemoryBytes) {
+                    metrics.cacheSpilled();
+                }
+
+                long previousSpill = Math.max(0, peakBufferedBytes - maxMainMemoryBytes);
+                metrics.spilled(bufferedBytes - maxMainMemoryBytes - previousSpill);
+            }
+
+            peakBufferedBytes = bufferedBytes;
+        }
+    }
+
+    /** Buffer reporting its length changes to the cache. */
+    private final class MeteredBuffer implements RandomAccess {
+
+        private final RandomAccess buffer;
+        private long length;
+        /** The bytes written since the length was reported. */
+        private int unreportedBytes;
+
+        private MeteredBuffer(RandomAccess buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            buffer.write(b);
+            written(1);
+        }
+
+        @Override
+        public void write(byte[] b) throws IOException {
+            buffer.write(b);
+            written(b.length);
+        }
+
+        @Override
+        public void write(byte[] b, int offset, int length) throws IOException {
+            buffer.write(b, offset, length);
+            written(length);
+        }
+
+        @Override
+        public void clear() throws IOException {
+            buffer.clear();
+            updateLength();
+        }
+
+        @Override
+        public int read() throws IOException {
+            return buffer.read();
+        }
+
+        @Override
+        public int read(byte[] b) throws IOException {
+            return buffer.read(b);
+        }
+
+        @Override
+        public int read(byte[] b, int offset, int length) throws IOException {
+            return buffer.read(b, offset, length);
+        }
+
+        @Override
+        public long getPosition() throws IOException {
+            return buffer.getPosition();
+        }
+
+        @Override
+        public void seek(long position) throws IOException {
+            buffer.seek(position);
+            updateLength();
+        }
+
+        @Override
+        public long length() throws IOException {
+            return buffer.length();
+        }
+
+        @Override
+        public boolean isClosed() {
+            return buffer.isClosed();
+        }
+
+        @Override
+        public int peek() throws IOException {
+            return buffer.peek();
+        }
+
+        @Override
+        public void rewind(int bytes) throws IOException {
+            buffer.rewind(bytes);
+        }
+
+        @Override
+        public boolean isEOF() throws IOException {
+            return buffer.isEOF();
+        }
+
+        @Override
+        public int available() throws IOException {
+            return buffer.available();
+        }
+
+        @Override
+        public void skip(int length) throws IOException {
+            buffer.skip(length);
+        }
+
+        @Override
+        public RandomAccessReadView createView(long startPosition, long streamLength) throws IOException {
+            return buffer.createView(startPosition, streamLength);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!buffer.isClosed()) {
+                // the last bytes count for the peak
+                updateLength();
+                resized(-length);
+                length = 0;
+            }
+
+            buffer.close();
+        }
+
+        private void written(int bytes) throws IOException {
+            unreportedBytes += bytes;
+            if (unreportedBytes >= REPORT_BYTES) {
+                updateLength();
+            }
+        }
+
+        private void updateLength() throws IOException {
+            unreportedBytes = 0;
+            long newLength = buffer.length();
+            resized(newLength - length);
+            length = newLength;
+        }
+    }
+}
@@ -0,0 +1,474 @@
+package io.github.mjoe92.easypdfbox;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+
+/**
+ * Writes the content stream of a page (or form) with a single text object: the text state (font, size, leading and
+ * line position) is tracked, so only the operators of the actual changes are written. The lines are positioned
+ * relative to the previous one with <code>T*</code> or <code>Td</code>.
+ * <p>
+ * The glyphs are written as mapped by the cmap of the font, unless the script of the font needs glyph substitutions
+ * to be shaped, see {@link GlyphSubstitution}.
+ * <p>
+ * Path operators are not allowed within a text object, so the underlines are collected and stroked after the text
+ * object is closed.
+ * <p>
+ * The writer names the fonts and forms of the content itself and only registers them in the resources with
+ * {@link #registerResources(PDResources)}, so the content can be written on any thread without touching the shared
+ * objects of the document.
+ */
+final class PageContentWriter implements Closeable {
+
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes();
+    /** The size of the buffer in front of the stream, the content is written a few bytes at a time. */
+    private static final int BUFFER_SIZE = 8192;
+
+    private final OutputStream outputStream;
+    private final Map<DocumentFont, COSName> fontNames;
+    private final Map<DocumentFont, BitSet> usedCodePoints;
+    private final Map<DocumentFont, BitSet> usedGlyphIds;
+    private final Map<PDFormXObject, COSName> formNames;
+    private final boolean kerning;
+    private final byte[] numberBuffer;
+
+    private boolean inText;
+    private DocumentFont currentFont;
+    private BitSet currentUsedCodePoints;
+    private BitSet currentUsedGlyphIds;
+    private GlyphSubstitution currentSubstitution;
+    private float currentFontSize;
+    private float currentLeading;
+    private float lineX;
+    private float lineY;
+
+    /** Underlines as (startX, endX, y, lineWidth) quadruples. */
+    private float[] underlines;
+    private int underlineCount;
+    private long glyphCount;
+
+    /**
+     * @param outputStream
+     *         the (filtered) stream of the content, it's buffered and closed when the writer is closed
+     * @param kerning
+     *         <code>true</code>, whether the kerning pairs are written
+     */
+    PageContentWriter(OutputStream outputStream, boolean kerning) {
+        // a filter like a deflater compresses on every write, even of a single byte
+        this.outputStream = new BufferedOutputStream(outputStream, BUFFER_SIZE);
+        this.kerning = kerning;
+
+        fontNames = new IdentityHashMap<>(4);
+        usedCodePoints = new IdentityHashMap<>(4);
+        usedGlyphIds = new IdentityHashMap<>(4);
+        formNames = new IdentityHashMap<>(2);
+        numberBuffer = new byte[24];
+        underlines = new float[16];
+    }
+
+    /**
+     * Writes a line of text.
+     *
+     * @param font
+     *         the font
+     * @param fontSize
+     *         the font size
+     * @param x
+     *         the x position of the line start
+     * @param y
+     *         the y position of the baseline
+     * @param text
+     *         the text
+     */
+    void showText(DocumentFont font, float fontSize, float x, float y, CharSequence text) throws IOException {
+        showText(font, fontSize, x, y, text, 0, text.length());
+    }
+
+    /**
+     * Writes a line of text from the range of a char sequence.
+     *
+     * @param font
+     *         the font
+     * @param fontSize
+     *         the font size
+     * @param x
+     *         the x position of the line start
+     * @param y
+     *         the y position of the baseline
+     * @param text
+     *         the text
+     * @param start
+     *         the index of the first char
+     * @param end
+     *         the index after the last char
+     */
+    void showText(DocumentFont font, float fontSize, float x, float y, CharSequence text, int start, int end) throws IOException {
+        beginText();
+        setFont(font, fontSize);
+        moveTo(x, y);
+        writeGlyphs(font, text, start, end);
+    }
+
+    /**
+     * Adds an underline, which is stroked after the text object.
+     *
+     * @param startX
+     *         the x position of the start
+     * @param endX
+     *         the x position of the end
+     * @param y
+     *         the y position
+     * @param lineWidth
+     *         the width of the line
+     */
+    void underline(float startX, float endX, float y, float lineWidth) {
+        if (underlineCount + 4 > underlines.length) {
+            underlines = Arrays.copyOf(underlines, underlines.length * 2);
+        }
+
+        underlines[underlineCount++] = startX;
+        underlines[underlineCount++] = endX;
+        underlines[underlineCount++] = y;
+        underlines[underlineCount++] = lineWidth;
+    }
+
+    /**
+     * Paints a form, e.g. the content shared by the pages. The text object is closed before, since the form can't be
+     * painted within it, the next text continues in a new text object.
+     *
+     * @param form
+     *         the form to paint
+     */
+    void drawForm(PDFormXObject form) throws IOException {
+        endText();
+        writeName(nameOf(form));
+        writeOperator("Do");
+    }
+
+    /**
+     * Paints a form moved to the given position, e.g. a content completed only after the page.
+     *
+     * @param form
+     *         the form to paint
+     * @param x
+     *         the x position of the origin of the form
+     * @param y
+     *         the y position of the origin of the form
+     */
+    void drawForm(PDFormXObject form, float x, float y) throws IOException {
+        endText();
+        writeOperator("q");
+        writeNumber(1);
+        writeNumber(0);
+        writeNumber(0);
+        writeNumber(1);
+        writeNumber(x);
+        writeNumber(y);
+        writeOperator("cm");
+        writeName(nameOf(form));
+        writeOperator("Do");
+        writeOperator("Q");
+    }
+
+    /** @return the number of glyphs written */
+    long glyphCount() {
+        return glyphCount;
+    }
+
+    /**
+     * Adds the fonts and forms of the content to the resources and marks the written glyphs to be embedded into the
+     * fonts. This must be called on the thread owning the document, once the content is complete.
+     *
+     * @param resources
+     *         the resources of the page or form of the content
+     */
+    void registerResources(PDResources resources) throws IOException {
+        for (Map.Entry<DocumentFont, COSName> font : fontNames.entrySet()) {
+            resources.put(font.getValue(), font.getKey().font());
+            font.getKey().markUsed(usedCodePoints.get(font.getKey()), usedGlyphIds.get(font.getKey()));
+        }
+
+        for (Map.Entry<PDFormXObject, COSName> form : formNames.entrySet()) {
+            resources.put(form.getValue(), form.getKey());
+        }
+    }
+
+    /** Closes the text object, strokes the underlines and closes the stream. */
+    @Override
+    public void close() throws IOException {
+        try (outputStream) {
+            endText();
+            strokeUnderlines();
+        }
+    }
+
+    private void beginText() throws IOException {
+        if (!inText) {
+            writeOperator("BT");
+            inText = true;
+            currentFont = null;
+            currentLeading = 0;
+            lineX = 0;
+            lineY = 0;
+        }
+    }
+
+    private void endText() throws IOException {
+        if (inText) {
+            writeOperator("ET");
+            inText = false;
+        }
+    }
+
+    private void setFont(DocumentFont font, float fontSize) throws IOException {
+        if (font == currentFont && fontSize == currentFontSize) {
+            return;
+        }
+
+        COSName fontName = fontNames.get(font);
+        if (fontName == null) {
+            fontName = COSName.getPDFName("F" + (fontNames.size() + 1));
+            fontNames.put(font, fontName);
+            usedCodePoints.put(font, new BitSet(256));
+            usedGlyphIds.put(font, new BitSet());
+        }
+
+        writeName(fontName);
+        writeNumber(fontSize);
+        writeOperator("Tf");
+
+        currentFont = font;
+        currentFontSize = fontSize;
+        currentUsedCodePoints = usedCodePoints.get(font);
+        currentUsedGlyphIds = usedGlyphIds.get(font);
+        currentSubstitution = font.substitution();
+    }
+
+    private COSName nameOf(PDFormXObject form) {
+        COSName formName = formNames.get(form);
+        if (formName == null) {
+            formName = COSName.getPDFName("Fm" + (formNames.size() + 1));
+            formNames.put(form, formName);
+        }
+
+        return formName;
+    }
+
+    private void moveTo(float x, float y) throws IOException {
+        float offsetX = x - lineX;
+        float offsetY = y - lineY;
+
+        if (isZero(offsetX) && offsetY < 0) {
+            float leading = -offsetY;
+            if (!isZero(leading - currentLeading)) {
+                writeNumber(leading);
+                writeOperator("TL");
+                currentLeading = leading;
+            }
+
+            writeOperator("T*");
+            lineY -= currentLeading;
+        } else {
+            writeNumber(offsetX);
+            writeNumber(offsetY);
+            writeOperator("Td");
+            lineX = x;
+            lineY = y;
+        }
+    }
+
+    private void writeGlyphs(DocumentFont font, CharSequence text, int start, int end) throws IOException {
+        GlyphWidths widths = font.widths();
+        boolean kerned = kerning && widths.hasKerning();
+
+        if (kerned) {
+            outputStream.write('[');
+        }
+
+        outputStream.write('<');
+        int previous = -1;
+        for (int index = start; index < end; ) {
+            int codePointStart = index;
+            int codePoint = Character.codePointAt(text, index);
+            index += Character.charCount(codePoint);
+
+            if (codePoint == '\t') {
+                // the TAB character seems to be not present in some bold, replacing with spaces here (spaces > tabs)
+                for (int space = 0; space < LineBreaker.TAB_SIZE; space++) {
+                    writeGlyph(widths, ' ');
+                }
+
+                previous = ' ';
+                continue;
+            }
+
+            if (kerned && previous != -1) {
+                float adjustment = widths.kerning(previous, codePoint);
+                if (adjustment != 0) {
+                    // the unit of positioning is thousandths of text space, positive values move to the left
+                    outputStream.write('>');
+                    writeNumber(-adjustment * 1000);
+                    outputStream.write('<');
+                }
+            }
+
+            if (!currentSubstitution.isEmpty() && !Character.isWhitespace(codePoint)) {
+                // the kerning of the substituted glyphs is not known, only the pair before the word is kerned
+                index = writeSubstituted(widths, text, codePointStart, end);
+                previous = Character.codePointBefore(text, index);
+                continue;
+            }
+
+            writeGlyph(widths, codePoint);
+            previous = codePoint;
+        }
+
+        outputStream.write('>');
+        if (kerned) {
+            outputStream.write(']');
+            writeOperator("TJ");
+        } else {
+            writeOperator("Tj");
+        }
+    }
+
+    /**
+     * Writes a word with the substitutions of the current font applied, words are separated by whitespace like in
+     * {@link org.apache.pdfbox.pdmodel.PDPageContentStream}.
+     *
+     * @return the index after the word
+     */
+    private int writeSubstituted(GlyphWidths widths, CharSequence text, int start, int end) throws IOException {
+        List<Integer> glyphIds = new ArrayList<>();
+        int index = start;
+        while (index < end) {
+            int codePoint = Character.codePointAt(text, index);
+            if (Character.isWhitespace(codePoint)) {
+                break;
+            }
+
+            int glyphId = widths.glyphId(codePoint);
+            if (glyphId != 0) {
+                currentUsedCodePoints.set(codePoint);
+            }
+
+            glyphIds.add(glyphId);
+            index += Character.charCount(codePoint);
+        }
+
+        for (int glyphId : currentSubstitution.apply(glyphIds)) {
+            currentUsedGlyphIds.set(glyphId);
+            glyphCount++;
+            writeGlyphId(glyphId);
+        }
+
+        return index;
+    }
+
+    private void writeGlyph(GlyphWidths widths, int codePoint) throws IOException {
+        int glyphId = widths.glyphId(codePoint);
+        glyphCount++;
+        if (glyphId != 0) {
+            currentUsedCodePoints.set(codePoint);
+        }
+
+        writeGlyphId(glyphId);
+    }
+
+    /** Writes the glyph id as CID, which is the same for the Identity-H encoding of an embedded TrueType font. */
+    private void writeGlyphId(int glyphId) throws IOException {
+        outputStream.write(HEX[(glyphId >> 12) & 0xF]);
+        outputStream.write(HEX[(glyphId >> 8) & 0xF]);
+        outputStream.write(HEX[(glyphId >> 4) & 0xF]);
+        outputStream.write(HEX[glyphId & 0xF]);
+    }
+
+    private void strokeUnderlines() throws IOException {
+        float currentLineWidth = -1;
+        for (int index = 0; index < underlineCount; index += 4) {
+            float lineWidth = underlines[index + 3];
+            if (lineWidth != currentLineWidth) {
+                writeNumber(lineWidth);
+                writeOperator("w");
+                currentLineWidth = lineWidth;
+            }
+
+            writeNumber(underlines[index]);
+            writeNumber(underlines[index + 2]);
+            writeOperator("m");
+            writeNumber(underlines[index + 1]);
+            writeNumber(underlines[index + 2]);
+            writeOperator("l");
+        }
+
+        if (underlineCount > 0) {
+            writeOperator("S");
+            underlineCount = 0;
+        }
+    }
+
+    private void writeName(COSName name) throws IOException {
+        name.writePDF(outputStream);
+        outputStream.write(' ');
+    }
+
+    /** Writes the number with at most 4 fraction digits, without allocating. */
+    private void writeNumber(float value) throws IOException {
+        long scaled = Math.round(value * 10_000d);
+        int position = numberBuffer.length;
+
+        int fraction = (int) Math.abs(scaled % 10_000);
+        long integer = Math.abs(scaled / 10_000);
+
+        if (fraction != 0) {
+            int digits = 4;
+            while (fraction % 10 == 0) {
+                fraction /= 10;
+                digits--;
+            }
+
+            for (int digit = 0; digit < digits; digit++) {
+                numberBuffer[--position] = (byte) ('0' + fraction % 10);
+                fraction /= 10;
+            }
+
+            numberBuffer[--position] = '.';
+        }
+
+        do {
+            numberBuffer[--position] = (byte) ('0' + integer % 10);
+            integer /= 10;
+        } while (integer != 0);
+
+        if (scaled < 0) {
+            numberBuffer[--position] = '-';
+        }
+
+        outputStream.write(numberBuffer, position, numberBuffer.length - position);
+        outputStream.write(' ');
+    }
+
+    private void writeOperator(String operator) throws IOException {
+        for (int index = 0; index < operator.length(); index++) {
+            outputStream.write(operator.charAt(index));
+        }
+
+        outputStream.write('\n');
+    }
+
+    private static boolean isZero(float value) {
+        return Math.abs(value) < 0.001f;
+    }
+}
@@ -0,0 +1,90 @@
+package io.github.mjoe92.easypdfbox;
+
+import java.util.Arrays;
+
+/**
+ * The result of laying out a page: the lines of the page with their y position, and whether pages are to be inserted
+ * after it. The content of the page is written from it later, possibly on another thread. The lines are copied
+ * into {@link LineColumns} of the page, so the text buffer can drop them, their chars and styles stay in the store
+ * shared with the buffer.
+ */
+final class PageLayout {
+
+    private final LineColumns lines;
+    private float[] yPositions;
+    private boolean page;
+    private boolean insertsPages;
+    private float consumedHeight;
+
+    /**
+     * @param store
+     *         the store of the text buffer the lines are taken from
+     */
+    PageLayout(TextStore store) {
+        lines = new LineColumns(store);
+        yPositions = new float[64];
+    }
+
+    /** @return the number of lines */
+    int size() {
+        return lines.size();
+    }
+
+    /** @return the lines of the page */
+    LineColumns lines() {
+        return lines;
+    }
+
+    /** @return the y position of the baseline of the line */
+    float y(int line) {
+        return yPositions[line];
+    }
+
+    /** @return <code>true</code>, whether a page is created, it's false when there was no text or pages are inserted first */
+    boolean isPage() {
+        return page;
+    }
+
+    /** @return <code>true</code>, whether the next pages to insert follow this layout */
+    boolean insertsPages() {
+        return insertsPages;
+    }
+
+    /** @return the sum of the leading of the text taken from the buffer */
+    float consumedHeight() {
+        return consumedHeight;
+    }
+
+    void markPage() {
+        page = true;
+    }
+
+    void markInsertsPages() {
+        insertsPages = true;
+    }
+
+    void consume(float leading) {
+        consumedHeight += leading;
+    }
+
+    /** Adds a copy of a line of the columns, e.g. of the text buffer. */
+    void add(LineColumns columns, int line, float y) {
+        addY(y);
+        lines.add(columns, line);
+    }
+
+    /** Adds a line in one style from the range of the text, e.g. of a table cell. */
+    void add(CharSequence text, int start, int end, float xStart, TextType type, FontFragment fontFragment, float width, float y) {
+        addY(y);
+        lines.add(text, start, end, xStart, type, fontFragment, width);
+    }
+
+    private void addY(float y) {
+        int size = lines.size();
+        if (size == yPositions.length) {
+            yPositions = Arrays.copyOf(yPositions, size * 2);
+        }
+
+        yPositions[size] = y;
+    }
+}
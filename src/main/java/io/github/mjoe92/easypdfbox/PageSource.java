@@ -0,0 +1,181 @@
+package io.github.mjoe92.easypdfbox;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.io.RandomAccessReadBuffer;
+import org.apache.pdfbox.io.RandomAccessReadBufferedFile;
+import org.apache.pdfbox.io.RandomAccessStreamCache;
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+/**
+ * The source of pages to insert. The source is only opened and parsed when the insertion point is reached while
+ * laying out the document, so the sources are processed one at a time.
+ */
+interface PageSource extends Closeable {
+
+    /**
+     * Parses the PDF document of the source. Closing the returned document also closes the source.
+     *
+     * @param streamCache
+     *         the stream cache of the parsed document
+     * @return the parsed document
+     */
+    PDDocument load(RandomAccessStreamCache.StreamCacheCreateFunction streamCache) throws IOException;
+
+    /** Releases the source, when it was never loaded. */
+    @Override
+    default void close() throws IOException { }
+
+    /** @return <code>true</code>, whether the source can be loaded repeatedly, e.g. by the documents of a template */
+    default boolean isReusable() {
+        return false;
+    }
+
+    /**
+     * @return the key identifying the same source without reading it, e.g. the same byte array or the same unmodified
+     *         file, null if the source can only be read once
+     */
+    default Object key() throws IOException {
+        return null;
+    }
+
+    /** @return the size of the PDF data, -1 if it isn't known without reading the source */
+    default long size() throws IOException {
+        return -1;
+    }
+
+    /** @return the hash of the PDF data identifying equal sources, null if the source can only be read once */
+    default String contentHash() throws IOException {
+        return null;
+    }
+
+    /** @return the PDF data, only supported by the reusable sources */
+    default byte[] readAllBytes() throws IOException {
+        throw new UnsupportedOperationException("The source can only be read once!");
+    }
+
+    static PageSource of(byte[] data) {
+        return new BytesSource(data);
+    }
+
+    static PageSource of(Path path) {
+        return new FileSource(path);
+    }
+
+    static PageSource of(InputStream inputStream) {
+        return new StreamSource(inputStream);
+    }
+
+    static PageSource of(RandomAccessRead randomAccessRead) {
+        return new RandomAccessSource(randomAccessRead);
+    }
+
+    /** Pages in a byte array. */
+    record BytesSource(byte[] data) implements PageSource {
+
+        @Override
+        public PDDocument load(RandomAccessStreamCache.StreamCacheCreateFunction streamCache) throws IOException {
+            return Loader.loadPDF(data, null, null, null, streamCache);
+        }
+
+        @Override
+        public boolean isReusable() {
+            return true;
+        }
+
+        /** @return the source itself, which equals the sources of the same array */
+        @Override
+        public Object key() {
+            return this;
+        }
+
+        @Override
+        public long size() {
+            return data.length;
+        }
+
+        @Override
+        public String contentHash() {
+            return ContentHash.of(data);
+        }
+
+        @Override
+        public byte[] readAllBytes() {
+            return data;
+        }
+    }
+
+    /** Pages in a file, read through a buffered window instead of loading the whole file. */
+    record FileSource(Path path) implements PageSource {
+
+        @Override
+        public PDDocument load(RandomAccessStreamCache.StreamCacheCreateFunction streamCache) throws IOException {
+            return Loader.loadPDF(new RandomAccessReadBufferedFile(path), null, null, null, streamCache);
+        }
+
+        @Override
+        public boolean isReusable() {
+            return true;
+        }
+
+        @Override
+        public Object key() throws IOException {
+            return new FileKey(path.toAbsolutePath().normalize(), Files.size(path), Files.getLastModifiedTime(path));
+        }
+
+        @Override
+        public long size() throws IOException {
+            return Files.size(path);
+        }
+
+        @Override
+        public String contentHash() throws IOException {
+            return ContentHash.of(path);
+        }
+
+        @Override
+        public byte[] readAllBytes() throws IOException {
+            return Files.readAllBytes(path);
+        }
+    }
+
+    /** Identifies a file by its path, size and modification time, so a modified file is another source. */
+    record FileKey(Path path, long size, FileTime lastModified) { }
+
+    /** Pages in a stream, which is read only at the insertion point. */
+    record StreamSource(InputStream inputStream) implements PageSource {
+
+        @Override
+        public PDDocument load(RandomAccessStreamCache.StreamCacheCreateFunction streamCache) throws IOException {
+            try (inputStream) {
+                return Loader.loadPDF(new RandomAccessReadBuffer(inputStream), null, null, null, streamCache);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            inputStream.close();
+        }
+    }
+
+    /** Pages in any random access source, e.g. a memory mapped file. */
+    record RandomAccessSource(RandomAccessRead randomAccessRead) implements PageSource {
+
+        @Override
+        public PDDocument load(RandomAccessStreamCache.StreamCacheCreateFunction streamCache) throws IOException {
+            return Loader.loadPDF(randomAccessRead, null, null, null, streamCache);
+        }
+
+        @Override
+        public void close() throws IOException {
+            randomAccessRead.close();
+        }
+    }
+}
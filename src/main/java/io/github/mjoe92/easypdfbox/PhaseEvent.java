@@ -0,0 +1,29 @@
+package io.github.mjoe92.easypdfbox;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/** Flight Recorder event of the total time an {@link EasyDocument} spent in a phase, see {@link Instrumentation.Phase}. */
+@Name("io.github.mjoe92.easypdfbox.Phase")
+@Label("PDF Phase")
+@Category("Easy PDFBox")
+@Description("The total time a document spent in a phase of its conversion")
+@StackTrace(false)
+final class PhaseEvent extends jdk.jfr.Event {
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long time;
+
+    @Label("Allocated")
+    @DataAmount
+    long allocatedBytes;
+}
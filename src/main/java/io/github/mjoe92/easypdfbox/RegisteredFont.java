@@ -0,0 +1,184 @@
+package io.github.mjoe92.easypdfbox;
+
+import java.io.IOException;
+
+import org.apache.fontbox.ttf.CmapLookup;
+import org.apache.fontbox.ttf.HorizontalHeaderTable;
+import org.apache.fontbox.ttf.OS2WindowsMetricsTable;
+import org.apache.fontbox.ttf.TrueTypeFont;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
+
+/**
+ * A {@link TrueTypeFont} parsed once by the {@link FontRegistry} together with its metrics.
+ * <p>
+ * All the tables are read eagerly once the font is parsed, so the instance can be shared by concurrently built
+ * documents without the lazy table initialization of {@link TrueTypeFont} racing between threads. The bundled fonts
+ * are created from their precomputed {@link FontMetrics}: they are only parsed when their glyphs are embedded.
+ */
+public final class RegisteredFont {
+
+    /** Bit 1 of the OS/2 fsType: restricted license embedding. */
+    private static final int FS_TYPE_RESTRICTED = 0x0002;
+
+    private final String name;
+    private final TrueTypeLoader loader;
+    private volatile TrueTypeFont trueTypeFont;
+    private volatile GlyphSubstitution glyphSubstitution;
+    private final GlyphWidths widths;
+    private final int unitsPerEm;
+    private final float ascent;
+    private final float descent;
+
+    RegisteredFont(String name, TrueTypeFont trueTypeFont) throws IOException {
+        this.name = name;
+        this.trueTypeFont = trueTypeFont;
+        loader = null;
+
+        preloadTables(trueTypeFont);
+        checkEmbeddable(trueTypeFont);
+
+        CmapLookup cmapLookup = trueTypeFont.getUnicodeCmapLookup();
+        widths = new GlyphWidths(trueTypeFont, cmapLookup);
+        unitsPerEm = trueTypeFont.getUnitsPerEm();
+
+        HorizontalHeaderTable horizontalHeader = trueTypeFont.getHorizontalHeader();
+        ascent = horizontalHeader.getAscender() / (float) unitsPerEm;
+        descent = horizontalHeader.getDescender() / (float) unitsPerEm;
+    }
+
+    /**
+     * Creates the font from its precomputed metrics, the font itself is parsed on first use.
+     *
+     * @param name
+     *         the name of the font
+     * @param metrics
+     *         the metrics of the font
+     * @param loader
+     *         parses the font
+     */
+    RegisteredFont(String name, FontMetrics metrics, TrueTypeLoader loader) {
+        this.name = name;
+        this.loader = loader;
+
+        widths = metrics.widths();
+        unitsPerEm = metrics.unitsPerEm();
+        ascent = metrics.ascent();
+        descent = metrics.descent();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getUnitsPerEm() {
+        return unitsPerEm;
+    }
+
+    /** @return the ascent relative to the font size (1 = one em) */
+    public float getAscent() {
+        return ascent;
+    }
+
+    /** @return the (negative) descent relative to the font size (1 = one em) */
+    public float getDescent() {
+        return descent;
+    }
+
+    /**
+     * @param codePoint
+     *         the unicode code point
+     * @return the advance width relative to the font size (1 = one em), the width of the missing glyph if the font has
+     *         no glyph for it
+     */
+    public float getAdvanceWidth(int codePoint) {
+        return widths.width(codePoint);
+    }
+
+    GlyphWidths getWidths() {
+        return widths;
+    }
+
+    FontMetrics getMetrics() {
+        return new FontMetrics(unitsPerEm, ascent, descent, widths);
+    }
+
+    /** @return <code>true</code>, whether the TrueType font is parsed, not only its metrics */
+    boolean isParsed() {
+        return trueTypeFont != null;
+    }
+
+    TrueTypeFont getTrueTypeFont() throws IOException {
+        TrueTypeFont parsed = trueTypeFont;
+        if (parsed != null) {
+            return parsed;
+        }
+
+        synchronized (this) {
+            if (trueTypeFont == null) {
+                parsed = loader.load();
+                preloadTables(parsed);
+                checkEmbeddable(parsed);
+                trueTypeFont = parsed;
+            }
+
+            return trueTypeFont;
+        }
+    }
+
+    /** @return the glyph substitutions of the font, the font is parsed if it's not yet */
+    GlyphSubstitution getGlyphSubstitution() throws IOException {
+        GlyphSubstitution substitution = glyphSubstitution;
+        if (substitution == null) {
+            // computing it twice on a race is harmless, the result is the same
+            substitution = GlyphSubstitution.of(getTrueTypeFont());
+            glyphSubstitution = substitution;
+        }
+
+        return substitution;
+    }
+
+    /**
+     * Creates the lightweight per-document wrapper, which only embeds the glyphs used in the document.
+     *
+     * @param document
+     *         the document to embed the font into
+     * @return the font to use in the content streams of the document
+     */
+    PDType0Font load(PDDocument document) throws IOException {
+        return PDType0Font.load(document, getTrueTypeFont(), true);
+    }
+
+    private static void preloadTables(TrueTypeFont trueTypeFont) throws IOException {
+        trueTypeFont.getHeader();
+        trueTypeFont.getHorizontalHeader();
+        trueTypeFont.getHorizontalMetrics();
+        trueTypeFont.getMaximumProfile();
+        trueTypeFont.getIndexToLocation();
+        trueTypeFont.getGlyph();
+        trueTypeFont.getCmap();
+        trueTypeFont.getNaming();
+        trueTypeFont.getPostScript();
+        trueTypeFont.getOS2Windows();
+        trueTypeFont.getKerning();
+        trueTypeFont.getVerticalHeader();
+        trueTypeFont.getVerticalMetrics();
+        trueTypeFont.getVerticalOrigin();
+        trueTypeFont.getGsub();
+        trueTypeFont.getGsubData();
+    }
+
+    private void checkEmbeddable(TrueTypeFont trueTypeFont) throws IOException {
+        OS2WindowsMetricsTable os2Windows = trueTypeFont.getOS2Windows();
+        if (os2Windows != null && (os2Windows.getFsType() & FS_TYPE_RESTRICTED) == FS_TYPE_RESTRICTED) {
+            throw new IllegalArgumentException("The license of font '" + name + "' does not permit embedding");
+        }
+    }
+
+    /** Parses the TrueType font of precomputed metrics. */
+    @FunctionalInterface
+    interface TrueTypeLoader {
+
+        TrueTypeFont load() throws IOException;
+    }
+}
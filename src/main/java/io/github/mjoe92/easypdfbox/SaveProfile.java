@@ -0,0 +1,38 @@
+package io.github.mjoe92.easypdfbox;
+
+import java.util.zip.Deflater;
+
+import org.apache.pdfbox.pdfwriter.compress.CompressParameters;
+
+/**
+ * The trade-off between the size of the saved PDF document and the time to save it: the compression level of the
+ * content streams of the pages, and whether the objects are packed into compressed object streams (with a
+ * compressed cross-reference stream) when saving.
+ */
+public enum SaveProfile {
+
+    /** Fast content compression, the objects are written uncompressed with a classic cross-reference table. */
+    FASTEST(Deflater.BEST_SPEED, CompressParameters.NO_COMPRESSION),
+    /** The default: default content compression, the objects are packed into object streams of 100 objects. */
+    BALANCED(Deflater.DEFAULT_COMPRESSION, CompressParameters.DEFAULT_COMPRESSION),
+    /** The best content compression, the objects are packed into object streams of 1000 objects. */
+    SMALLEST(Deflater.BEST_COMPRESSION, new CompressParameters(1000));
+
+    private final int deflateLevel;
+    private final CompressParameters compressParameters;
+
+    SaveProfile(int deflateLevel, CompressParameters compressParameters) {
+        this.deflateLevel = deflateLevel;
+        this.compressParameters = compressParameters;
+    }
+
+    /** @return the {@link Deflater} level of the content streams */
+    int deflateLevel() {
+        return deflateLevel;
+    }
+
+    /** @return the parameters to save the document with */
+    CompressParameters compressParameters() {
+        return compressParameters;
+    }
+}
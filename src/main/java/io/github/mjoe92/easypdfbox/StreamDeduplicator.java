@@ -0,0 +1,200 @@
+package io.github.mjoe92.easypdfbox;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSBoolean;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSNull;
+import org.apache.pdfbox.cos.COSNumber;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.pdmodel.PDPage;
+
+/**
+ * Replaces the streams of imported pages with equal streams imported before, e.g. the fonts, images and ICC profiles
+ * of the same letterhead inserted into a document several times, so they are stored only once. Streams are equal
+ * when their raw (encoded) data and their dictionaries are equal, the nested streams are compared after being
+ * deduplicated themselves.
+ * <p>
+ * An instance belongs to one document, it must only be used on the thread owning the document.
+ */
+final class StreamDeduplicator {
+
+    /** Nested dictionaries deeper than this are not compared, their streams are kept. */
+    private static final int MAX_DEPTH = 16;
+
+    private final Map<String, COSStream> streams;
+    private final Map<COSStream, COSStream> canonicalStreams;
+    private final Map<COSStream, Integer> streamIds;
+    private int deduplicated;
+
+    StreamDeduplicator() {
+        streams = new HashMap<>();
+        canonicalStreams = new IdentityHashMap<>();
+        streamIds = new IdentityHashMap<>();
+    }
+
+    /** @return the number of streams replaced with an equal one */
+    int deduplicated() {
+        return deduplicated;
+    }
+
+    /**
+     * Replaces the streams referenced by the page (content, resources and annotations) with equal streams seen
+     * before.
+     *
+     * @param page
+     *         the imported page
+     */
+    void deduplicate(PDPage page) throws IOException {
+        walk(page.getCOSObject(), Collections.newSetFromMap(new IdentityHashMap<>()));
+    }
+
+    private void walk(COSBase base, Set<COSBase> visited) throws IOException {
+        COSBase resolved = resolve(base);
+        if (!(resolved instanceof COSDictionary || resolved instanceof COSArray) || !visited.add(resolved)) {
+            return;
+        }
+
+        if (resolved instanceof COSArray array) {
+            for (int index = 0; index < array.size(); index++) {
+                COSStream canonical = canonicalOf(array.get(index), visited);
+                if (canonical != null) {
+                    array.set(index, canonical);
+                }
+            }
+        } else {
+            COSDictionary dictionary = (COSDictionary) resolved;
+            for (COSName key : new ArrayList<>(dictionary.keySet())) {
+                // the back references lead to the page tree and the other pages
+                if (COSName.PARENT.equals(key) || COSName.P.equals(key)) {
+                    continue;
+                }
+
+                COSStream canonical = canonicalOf(dictionary.getItem(key), visited);
+                if (canonical != null) {
+                    dictionary.setItem(key, canonical);
+                }
+            }
+        }
+    }
+
+    /** @return the equal stream seen before to replace the item with, null to keep it */
+    private COSStream canonicalOf(COSBase item, Set<COSBase> visited) throws IOException {
+        walk(item, visited);
+
+        if (!(resolve(item) instanceof COSStream stream)) {
+            return null;
+        }
+
+        COSStream canonical = canonicalStreams.get(stream);
+        if (canonical == null) {
+            String key = keyOf(stream);
+            canonical = key == null ? stream : streams.computeIfAbsent(key, k -> stream);
+            canonicalStreams.put(stream, canonical);
+            if (canonical != stream) {
+                deduplicated++;
+            }
+        }
+
+        return canonical == stream ? null : canonical;
+    }
+
+    /** @return the hash of the dictionary and the raw data of the stream, null if it can't be compared */
+    private String keyOf(COSStream stream) throws IOException {
+        MessageDigest digest = ContentHash.sha256();
+        if (!update(digest, stream, 0)) {
+            return null;
+        }
+
+        return ContentHash.of(stream.createRawInputStream(), digest);
+    }
+
+    private boolean update(MessageDigest digest, COSDictionary dictionary, int depth) {
+        if (depth > MAX_DEPTH) {
+            return false;
+        }
+
+        List<COSName> keys = new ArrayList<>(dictionary.keySet());
+        keys.sort(null);
+        digest.update((byte) '<');
+        for (COSName key : keys) {
+            if (COSName.PARENT.equals(key) || COSName.P.equals(key)) {
+                return false;
+            }
+
+            digest.update(key.getName().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) ' ');
+            if (!update(digest, dictionary.getItem(key), depth + 1)) {
+                return false;
+            }
+        }
+        digest.update((byte) '>');
+        return true;
+    }
+
+    private boolean update(MessageDigest digest, COSBase base, int depth) {
+        COSBase resolved = resolve(base);
+        switch (resolved) {
+            case COSStream stream -> {
+                // nested streams are already deduplicated, equal ones are the same instance
+                COSStream canonical = canonicalStreams.getOrDefault(stream, stream);
+                Integer id = streamIds.computeIfAbsent(canonical, s -> streamIds.size());
+                digest.update(("S" + id).getBytes(StandardCharsets.US_ASCII));
+            }
+            case COSDictionary dictionary -> {
+                if (!update(digest, dictionary, depth)) {
+                    return false;
+                }
+            }
+            case COSArray array -> {
+                if (depth > MAX_DEPTH) {
+                    return false;
+                }
+
+                digest.update((byte) '[');
+                for (int index = 0; index < array.size(); index++) {
+                    if (!update(digest, array.get(index), depth + 1)) {
+                        return false;
+                    }
+                }
+                digest.update((byte) ']');
+            }
+            case COSName name -> digest.update(("/" + name.getName()).getBytes(StandardCharsets.UTF_8));
+            case COSString string -> {
+                digest.update((byte) '(');
+                digest.update(string.getBytes());
+                digest.update((byte) ')');
+            }
+            case COSNumber number -> digest.update(number.toString().getBytes(StandardCharsets.US_ASCII));
+            case COSBoolean bool -> digest.update(bool.getValue() ? (byte) 'T' : (byte) 'F');
+            case null, default -> {
+                if (resolved != null && resolved != COSNull.NULL) {
+                    return false;
+                }
+
+                digest.update((byte) 'N');
+            }
+        }
+
+        digest.update((byte) ' ');
+        return true;
+    }
+
+    private static COSBase resolve(COSBase base) {
+        return base instanceof COSObject object ? object.getObject() : base;
+    }
+}
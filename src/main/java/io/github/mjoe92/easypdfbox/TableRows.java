@@ -0,0 +1,76 @@
+package io.github.mjoe92.easypdfbox;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The rows of a table, pulled from their source only when the table is laid out, so just the rows of the current
+ * page are held in memory. A row which didn't fit on a page is kept to start the next one.
+ */
+final class TableRows implements Closeable {
+
+    private final float[] columnWidths;
+    private final List<String> header;
+    private final Iterator<? extends List<String>> rows;
+    private final Runnable onClose;
+
+    private List<String> pendingRow;
+
+    /**
+     * @param columnWidths
+     *         the widths of the columns
+     * @param header
+     *         the header row repeated on every page, null if none
+     * @param rows
+     *         the rows
+     * @param onClose
+     *         releases the source of the rows
+     */
+    TableRows(float[] columnWidths, List<String> header, Iterator<? extends List<String>> rows, Runnable onClose) {
+        this.columnWidths = columnWidths;
+        this.header = header;
+        this.rows = rows;
+        this.onClose = onClose;
+    }
+
+    float[] columnWidths() {
+        return columnWidths;
+    }
+
+    /** @return the header row, null if none */
+    List<String> header() {
+        return header;
+    }
+
+    /** @return the next row, null if there are no more rows */
+    List<String> next() {
+        if (pendingRow != null) {
+            List<String> row = pendingRow;
+            pendingRow = null;
+            return row;
+        }
+
+        if (!rows.hasNext()) {
+            return null;
+        }
+
+        List<String> row = rows.next();
+        if (row == null) {
+            // null marks the end of the rows here, it would silently drop the remaining rows
+            throw new IllegalArgumentException("A row of the table must not be null!");
+        }
+
+        return row;
+    }
+
+    /** Returns the row to be the next one again, e.g. when it didn't fit on the page. */
+    void pushBack(List<String> row) {
+        pendingRow = row;
+    }
+
+    @Override
+    public void close() {
+        onClose.run();
+    }
+}
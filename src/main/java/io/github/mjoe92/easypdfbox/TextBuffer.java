@@ -0,0 +1,154 @@
+package io.github.mjoe92.easypdfbox;
+
+import java.util.List;
+
+/**
+ * The queue of the text to lay out, stored in {@link LineColumns}: a wrapped line costs a few array slots and its
+ * chars instead of a string, a record and a queue node. The chars and styles are kept in a {@link TextStore} shared
+ * with the layouts of the pages. The consumed lines are dropped from the front once they make up half of the buffer,
+ * and their chunks of chars with them. Once all the lines are consumed, the store is cleared.
+ * <p>
+ * The lines are only dropped when text is added, the pages laid out before are written by then.
+ * <p>
+ * It may start with a prefix shared with other buffers, e.g. the text of a {@link DocumentTemplate}: the prefix is
+ * only read, never copied, and the text added afterward is queued separately.
+ */
+final class TextBuffer {
+
+    private static final LineColumns NO_PREFIX = new LineColumns(new TextStore());
+    /** The consumed lines are only dropped beyond this number, to not move small buffers repeatedly. */
+    private static final int COMPACT_THRESHOLD = 1024;
+
+    private final LineColumns prefix;
+    private final LineColumns lines;
+    private int prefixIndex;
+    private int head;
+
+    TextBuffer() {
+        this(NO_PREFIX);
+    }
+
+    /**
+     * @param prefix
+     *         the shared text at the beginning of the buffer, it must not be modified
+     */
+    TextBuffer(LineColumns prefix) {
+        this.prefix = prefix;
+        lines = new LineColumns(new TextStore());
+    }
+
+    /** @return the store of the chars and styles, which the layouts of the pages share */
+    TextStore store() {
+        return lines.store();
+    }
+
+    /** Adds a line without text, e.g. a page break. */
+    void add(TextType type) {
+        compact();
+        lines.add(type);
+    }
+
+    /**
+     * Adds a wrapped line of the text.
+     *
+     * @param text
+     *         the text
+     * @param start
+     *         the index of the first char of the line
+     * @param end
+     *         the index after the last char of the line
+     * @param xStart
+     *         the x position of the line start
+     * @param type
+     *         the text type
+     * @param fontFragment
+     *         the style of the whole line
+     * @param width
+     *         the measured width of the line, NaN if not known
+     */
+    void add(CharSequence text, int start, int end, float xStart, TextType type, FontFragment fontFragment, float width) {
+        compact();
+        lines.add(text, start, end, xStart, type, fontFragment, width);
+    }
+
+    /**
+     * Adds a wrapped line of fragments in different styles.
+     *
+     * @param text
+     *         the text
+     * @param start
+     *         the index of the first char of the line
+     * @param end
+     *         the index after the last char of the line
+     * @param xStart
+     *         the x position of the line start
+     * @param type
+     *         the text type
+     * @param fontFragments
+     *         the fragments of the line, one after another
+     * @param advances
+     *         the width of every fragment in text space units
+     */
+    void add(CharSequence text, int start, int end, float xStart, TextType type, List<FontFragment> fontFragments, float[] advances) {
+        compact();
+        lines.add(text, start, end, xStart, type, fontFragments, advances);
+    }
+
+    /**
+     * Removes the next line, a line of text is added to the page.
+     *
+     * @param pageLayout
+     *         the layout of the page
+     * @param y
+     *         the y position of the baseline of the line
+     * @return the type of the line, null if the buffer is empty
+     */
+    TextType poll(PageLayout pageLayout, float y) {
+        LineColumns columns;
+        int line;
+        if (prefixIndex < prefix.size()) {
+            columns = prefix;
+            line = prefixIndex++;
+        } else if (head < lines.size()) {
+            columns = lines;
+            line = head++;
+        } else {
+            return null;
+        }
+
+        if (columns.hasText(line)) {
+            pageLayout.add(columns, line, y);
+        }
+
+        return columns.type(line);
+    }
+
+    boolean isEmpty() {
+        return prefixIndex == prefix.size() && head == lines.size();
+    }
+
+    /** @return a compact copy of the buffered text */
+    LineColumns toColumns() {
+        if (prefixIndex == prefix.size()) {
+            return lines.copyFrom(head);
+        }
+
+        LineColumns copy = prefix.copyFrom(prefixIndex);
+        for (int line = head; line < lines.size(); line++) {
+            copy.add(lines, line);
+        }
+
+        return copy;
+    }
+
+    private void compact() {
+        if (head > 0 && head == lines.size()) {
+            lines.clear();
+            head = 0;
+        } else if (head > COMPACT_THRESHOLD && head * 2 > lines.size()) {
+            lines.removeFirst(head);
+            lines.releaseChunks();
+            head = 0;
+        }
+    }
+}
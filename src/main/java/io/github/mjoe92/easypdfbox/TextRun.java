@@ -0,0 +1,19 @@
+package io.github.mjoe92.easypdfbox;
+
+/**
+ * A part of a rich text paragraph written in its own style, see {@link EasyDocument#addParagraph(java.util.List)}.
+ *
+ * @param text
+ *         the text of the run
+ * @param bold
+ *         <code>true</code>, whether the text is bold
+ * @param underlined
+ *         <code>true</code>, whether the text is underlined
+ */
+public record TextRun(String text, boolean bold, boolean underlined) {
+
+    /** @return a run of regular, not underlined text */
+    public static TextRun of(String text) {
+        return new TextRun(text, false, false);
+    }
+}
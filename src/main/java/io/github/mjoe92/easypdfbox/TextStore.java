@@ -0,0 +1,167 @@
+package io.github.mjoe92.easypdfbox;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * The chars and the styles of the lines of a text buffer, shared by the {@link LineColumns} of the buffer and of the
+ * pages laid out from it: the text of a line is a range of an append-only chunk of chars and the fragments of a line
+ * refer to a style (font and underline) by its index, so a line copied into the layout of a page copies neither its
+ * chars nor its styles.
+ * <p>
+ * The styles are interned on their font and underline only, a document has at most four of them (regular or bold,
+ * underlined or not). The store is cleared once all the lines of its buffer are written.
+ */
+final class TextStore {
+
+    /** The number of chars of a chunk, a longer line gets a chunk of its own. */
+    private static final int CHUNK_SIZE = 16_384;
+
+    private char[][] chunks;
+    private CharSequence[] chunkViews;
+    private int chunkCount;
+    /** The number of chars used of the last chunk. */
+    private int chunkUsed;
+
+    private RegisteredFont[] styleFonts;
+    private boolean[] styleUnderlines;
+    private int styleCount;
+
+    TextStore() {
+        chunks = new char[4][];
+        chunkViews = new CharSequence[4];
+        styleFonts = new RegisteredFont[4];
+        styleUnderlines = new boolean[4];
+    }
+
+    /** @return the chars of the chunk, a view without copying them */
+    CharSequence chunk(int chunk) {
+        return chunkViews[chunk];
+    }
+
+    /** @return the index of the last chunk, the chars are appended to */
+    int lastChunk() {
+        return chunkCount - 1;
+    }
+
+    /** @return the index after the last char appended to the last chunk */
+    int lastChunkEnd() {
+        return chunkUsed;
+    }
+
+    /**
+     * Appends the range of the char sequence to the last chunk, a new chunk is started if it doesn't fit. The tabs are
+     * replaced with spaces, they are measured and written as spaces anyway.
+     *
+     * @param text
+     *         the text
+     * @param start
+     *         the index of the first char to append
+     * @param end
+     *         the index after the last char to append
+     * @return the index of the first appended char in the {@link #lastChunk() last chunk}
+     */
+    int append(CharSequence text, int start, int end) {
+        int length = end - start;
+        for (int index = start; index < end; index++) {
+            if (text.charAt(index) == '\t') {
+                length += LineBreaker.TAB_SIZE - 1;
+            }
+        }
+
+        if (chunkCount == 0 || chunkUsed + length > chunks[chunkCount - 1].length) {
+            addChunk(Math.max(CHUNK_SIZE, length));
+        }
+
+        char[] chunk = chunks[chunkCount - 1];
+        int chunkStart = chunkUsed;
+        if (length == end - start && text instanceof String string) {
+            string.getChars(start, end, chunk, chunkUsed);
+            chunkUsed += length;
+            return chunkStart;
+        }
+
+        for (int index = start; index < end; index++) {
+            char c = text.charAt(index);
+            if (c == '\t') {
+                Arrays.fill(chunk, chunkUsed, chunkUsed + LineBreaker.TAB_SIZE, ' ');
+                chunkUsed += LineBreaker.TAB_SIZE;
+            } else {
+                chunk[chunkUsed++] = c;
+            }
+        }
+
+        return chunkStart;
+    }
+
+    /**
+     * @param font
+     *         the font
+     * @param underlined
+     *         <code>true</code>, whether the text is underlined
+     * @return the index of the interned style
+     */
+    int style(RegisteredFont font, boolean underlined) {
+        for (int style = 0; style < styleCount; style++) {
+            if (styleFonts[style] == font && styleUnderlines[style] == underlined) {
+                return style;
+            }
+        }
+
+        if (styleCount == styleFonts.length) {
+            styleFonts = Arrays.copyOf(styleFonts, styleCount * 2);
+            styleUnderlines = Arrays.copyOf(styleUnderlines, styleCount * 2);
+        }
+
+        styleFonts[styleCount] = font;
+        styleUnderlines[styleCount] = underlined;
+        return styleCount++;
+    }
+
+    RegisteredFont font(int style) {
+        return styleFonts[style];
+    }
+
+    boolean underlined(int style) {
+        return styleUnderlines[style];
+    }
+
+    /**
+     * Drops the chunks before the given one, no line may refer to them anymore. The indexes of the chunks are kept.
+     *
+     * @param chunk
+     *         the first chunk still used
+     */
+    void release(int chunk) {
+        Arrays.fill(chunks, 0, chunk, null);
+        Arrays.fill(chunkViews, 0, chunk, null);
+    }
+
+    /** Drops the chars and the styles, no line may refer to them anymore. The last chunk is kept for reuse. */
+    void clear() {
+        if (chunkCount > 1) {
+            chunks[0] = chunks[chunkCount - 1];
+            chunkViews[0] = chunkViews[chunkCount - 1];
+            Arrays.fill(chunks, 1, chunkCount, null);
+            Arrays.fill(chunkViews, 1, chunkCount, null);
+            chunkCount = 1;
+        }
+        chunkUsed = 0;
+
+        Arrays.fill(styleFonts, 0, styleCount, null);
+        styleCount = 0;
+    }
+
+    private void addChunk(int size) {
+        if (chunkCount == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunkCount * 2);
+            chunkViews = Arrays.copyOf(chunkViews, chunkCount * 2);
+        }
+
+        char[] chunk = new char[size];
+        chunks[chunkCount] = chunk;
+        chunkViews[chunkCount] = CharBuffer.wrap(chunk);
+        chunkCount++;
+        chunkUsed = 0;
+    }
+}
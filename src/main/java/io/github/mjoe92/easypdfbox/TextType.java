@@ -13,7 +13,8 @@ public enum TextType {
     PAGE_NUMBER(10),
     NEW_LINE(18),
     PAGE_BREAK(0),
-    INSERT_PAGE(0);
+    INSERT_PAGE(0),
+    TABLE(10);
 
     private final float fontSize;
 
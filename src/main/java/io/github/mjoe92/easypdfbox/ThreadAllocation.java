@@ -0,0 +1,31 @@
+package io.github.mjoe92.easypdfbox;
+
+import java.lang.management.ManagementFactory;
+
+import com.sun.management.ThreadMXBean;
+
+/**
+ * Reads the bytes allocated on the heap by the current thread, where the JVM measures it (HotSpot does by default).
+ * Reading it is cheap, but not free, so it's only read when a phase is measured.
+ */
+final class ThreadAllocation {
+
+    /** The thread bean, null if the JVM doesn't measure the allocations of threads. */
+    private static final ThreadMXBean THREADS = threads();
+
+    private ThreadAllocation() { }
+
+    /** @return the bytes allocated by the current thread since it started, 0 if the JVM doesn't measure it */
+    static long allocatedBytes() {
+        return THREADS == null ? 0 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    private static ThreadMXBean threads() {
+        if (ManagementFactory.getThreadMXBean() instanceof ThreadMXBean threads && threads.isThreadAllocatedMemorySupported()
+                && threads.isThreadAllocatedMemoryEnabled()) {
+            return threads;
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,148 @@
+package io.github.mjoe92.easypdfbox;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of wrapped text: the line ranges and widths of a text wrapped with a font, font size and available
+ * width. Documents repeat the same strings constantly (labels, list delimiters, clauses, headers and footers), which
+ * are then measured only once. The least recently used entries are evicted beyond the maximum number of entries,
+ * and texts longer than {@link #MAX_TEXT_LENGTH} are never cached, so the memory of the cache stays bounded.
+ * <p>
+ * The cache is safe to share by the documents of all threads, see {@link EasyDocument#setWrapCache(WrapCache)}.
+ */
+public final class WrapCache {
+
+    /** Texts longer than this are wrapped every time, they are rarely repeated. */
+    public static final int MAX_TEXT_LENGTH = 1024;
+
+    private final Map<Key, LineRanges> entries;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param maxEntries
+     *         the maximum number of cached texts
+     */
+    public WrapCache(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("The maximum number of entries must be positive: " + maxEntries);
+        }
+
+        entries = new LinkedHashMap<>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, LineRanges> eldest) {
+                if (size() > maxEntries) {
+                    evictions++;
+                    return true;
+                }
+
+                return false;
+            }
+        };
+    }
+
+    /** @return the number of texts whose lines were taken from the cache */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /** @return the number of texts wrapped and added to the cache */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /** @return the number of entries evicted to stay within the maximum number of entries */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /** @return the ratio of the hits to all the lookups, 0 without any lookup */
+    public synchronized double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /** @return the number of cached texts */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /** Removes all the entries, the metrics are kept. */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Wraps the text like {@link LineBreaker#wrap(CharSequence, int, int, GlyphWidths, float, boolean, float, LineRanges)},
+     * taking the lines from the cache when the text was already wrapped the same way.
+     */
+    void wrap(String text, GlyphWidths widths, float fontSize, boolean kerning, float maxWidth, LineRanges ranges) {
+        wrap(text, null, widths, fontSize, kerning, maxWidth, ranges);
+    }
+
+    /**
+     * Wraps the text of runs in the same font like {@link LineBreaker#wrap(CharSequence, int[], GlyphWidths[], float,
+     * boolean, float, LineRanges)}, e.g. a title and its value that only differ in their underline, taking the lines
+     * and their fragments from the cache when the text was already wrapped with the same runs.
+     *
+     * @param runEnds
+     *         the index after the last char of every run, null for plain text
+     */
+    void wrap(String text, int[] runEnds, GlyphWidths widths, float fontSize, boolean kerning, float maxWidth, LineRanges ranges) {
+        if (text.length() > MAX_TEXT_LENGTH) {
+            breakLines(text, runEnds, widths, fontSize, kerning, maxWidth, ranges);
+            return;
+        }
+
+        Key key = new Key(text, runEnds, widths, fontSize, kerning, maxWidth);
+        LineRanges lines;
+        synchronized (this) {
+            lines = entries.get(key);
+            if (lines != null) {
+                hits++;
+            }
+        }
+
+        if (lines == null) {
+            // wrapped outside the lock, a concurrent miss of the same text only wraps it twice
+            lines = new LineRanges(4);
+            breakLines(text, runEnds, widths, fontSize, kerning, maxWidth, lines);
+
+            synchronized (this) {
+                misses++;
+                entries.put(key, lines);
+            }
+        }
+
+        ranges.addAll(lines);
+    }
+
+    private static void breakLines(String text, int[] runEnds, GlyphWidths widths, float fontSize, boolean kerning, float maxWidth, LineRanges ranges) {
+        if (runEnds == null) {
+            LineBreaker.wrap(text, 0, text.length(), widths, fontSize, kerning, maxWidth, ranges);
+        } else {
+            GlyphWidths[] runWidths = new GlyphWidths[runEnds.length];
+            Arrays.fill(runWidths, widths);
+            LineBreaker.wrap(text, runEnds, runWidths, fontSize, kerning, maxWidth, ranges);
+        }
+    }
+
+    /** The glyph widths are compared by identity, they are shared per registered font. The run ends by their values. */
+    private record Key(String text, int[] runEnds, GlyphWidths widths, float fontSize, boolean kerning, float maxWidth) {
+
+        @Override
+        public boolean equals(Object object) {
+            return object instanceof Key key && text.equals(key.text) && Arrays.equals(runEnds, key.runEnds) && widths == key.widths
+                    && fontSize == key.fontSize && kerning == key.kerning && maxWidth == key.maxWidth;
+        }
+
+        @Override
+        public int hashCode() {
+            return text.hashCode() * 31 + Arrays.hashCode(runEnds);
+        }
+    }
+}
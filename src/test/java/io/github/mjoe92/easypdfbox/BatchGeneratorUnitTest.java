@@ -0,0 +1,120 @@
+package io.github.mjoe92.easypdfbox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.jupiter.api.Test;
+
+class BatchGeneratorUnitTest {
+
+    @Test
+    void testGenerateWithBoundedParallelism() throws InterruptedException, IOException {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        Map<Integer, ByteArrayOutputStream> outputs = new ConcurrentHashMap<>();
+
+        BatchGenerator.Renderer<Integer> renderer = (spec, document) -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                document.addHeading("Statement " + spec, true, false);
+                document.addParagraph("Lorem ipsum dolor sit amet. ".repeat(spec % 7 + 1));
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                running.decrementAndGet();
+            }
+        };
+
+        BatchGenerator.Result result = new BatchGenerator(4).generate(IntStream.range(0, 40).boxed(), () -> new EasyDocument(50), renderer, spec -> {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            outputs.put(spec, outputStream);
+            return outputStream;
+        });
+
+        assertEquals(new BatchGenerator.Result(40, 0, 0), result);
+        assertTrue(maxRunning.get() <= 4);
+        assertEquals(40, outputs.size());
+        try (PDDocument document = Loader.loadPDF(outputs.get(17).toByteArray())) {
+            assertEquals(1, document.getNumberOfPages());
+        }
+    }
+
+    @Test
+    void testGenerateWritesPagesLaidOutWhileRenderingOnTheDocumentThread() throws InterruptedException {
+        AtomicInteger executedTasks = new AtomicInteger();
+        EasyDocument templateDocument = new EasyDocument(50);
+        templateDocument.setPageWindow(1);
+        templateDocument.setExecutor(task -> {
+            executedTasks.incrementAndGet();
+            task.run();
+        });
+        DocumentTemplate template = templateDocument.toTemplate();
+
+        BatchGenerator.Result result = new BatchGenerator(2).generate(IntStream.range(0, 4).boxed(), template::newDocument, (spec, document) -> {
+            // pages beyond the window are laid out and written at once while adding the text
+            document.addParagraph("Lorem ipsum dolor sit amet. ".repeat(2_000));
+            document.addParagraph("The end");
+        }, spec -> OutputStream.nullOutputStream());
+
+        assertEquals(new BatchGenerator.Result(4, 0, 0), result);
+        assertEquals(0, executedTasks.get());
+    }
+
+    @Test
+    void testGenerateReportsFailedAndEmptyDocuments() throws InterruptedException {
+        Map<Integer, Exception> failures = new ConcurrentHashMap<>();
+        Map<Integer, Boolean> opened = new ConcurrentHashMap<>();
+        AtomicBoolean insertClosed = new AtomicBoolean();
+
+        BatchGenerator.Sink<Integer> sink = new BatchGenerator.Sink<>() {
+
+            @Override
+            public OutputStream open(Integer spec) {
+                opened.put(spec, true);
+                return OutputStream.nullOutputStream();
+            }
+
+            @Override
+            public void failed(Integer spec, Exception exception) {
+                failures.put(spec, exception);
+            }
+        };
+
+        BatchGenerator.Result result = new BatchGenerator(2).generate(IntStream.range(0, 3).boxed(), () -> new EasyDocument(50), (spec, document) -> {
+            if (spec == 1) {
+                document.addNewPages(new ByteArrayInputStream(new byte[0]) {
+
+                    @Override
+                    public void close() {
+                        insertClosed.set(true);
+                    }
+                });
+                throw new IOException("broken spec");
+            }
+
+            if (spec == 2) {
+                document.addParagraph("Text");
+            }
+        }, sink);
+
+        assertEquals(new BatchGenerator.Result(1, 1, 1), result);
+        assertEquals("broken spec", failures.get(1).getMessage());
+        assertTrue(insertClosed.get());
+        assertFalse(opened.containsKey(0));
+        assertTrue(opened.containsKey(2));
+    }
+}
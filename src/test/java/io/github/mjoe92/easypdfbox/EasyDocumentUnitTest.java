@@ -1,11 +1,53 @@
 package io.github.mjoe92.easypdfbox;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.io.RandomAccessReadBufferedFile;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.font.PDFontDescriptor;
+import org.apache.pdfbox.text.PDFTextStripper;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 class EasyDocumentUnitTest {
 
@@ -20,4 +62,717 @@ class EasyDocumentUnitTest {
 
         assertNull(result);
     }
+
+    @Test
+    void testConvertDocumentWithKerning() throws IOException {
+        EasyDocument document = new EasyDocument(50);
+        document.setKerning(true);
+
+        document.addHeading("AVATAR Tomorrow", true, true);
+        document.addParagraph("WAVE To You, LAVA flows. ".repeat(20));
+
+        byte[] result = document.convert(8096);
+
+        assertNotNull(result);
+        try (PDDocument pdfDocument = Loader.loadPDF(result)) {
+            String content = new String(pdfDocument.getPage(0).getContents().readAllBytes(), StandardCharsets.ISO_8859_1);
+            // the kerned pairs (e.g. "AV", "WA") are positioned with TJ
+            assertTrue(content.contains("]TJ\n"));
+            assertEquals("AVATAR Tomorrow " + "WAVE To You, LAVA flows. ".repeat(20).strip(),
+                    new PDFTextStripper().getText(pdfDocument).strip().replaceAll("\\s+", " "));
+        }
+    }
+
+    @Test
+    void testConvertWritesSingleTextObjectPerPage() throws IOException {
+        EasyDocument document = new EasyDocument(50);
+        document.setHeader("Report header", true, false);
+        document.setFooter("Report footer");
+
+        document.addHeading("Heading", true, true);
+        document.addParagraph("First line\nSecond line\tTabbed");
+        document.addUnderlinedTitleColonValue("Title", "Value");
+
+        byte[] result = document.convert(8096);
+
+        try (PDDocument pdfDocument = Loader.loadPDF(result)) {
+            PDPage page = pdfDocument.getPage(0);
+            String content = new String(page.getContents().readAllBytes(), StandardCharsets.ISO_8859_1);
+            assertEquals(1, content.split("BT\n", -1).length - 1);
+            // heading and paragraph lines (same font), the header and the footer are in the shared form
+            assertEquals(2, content.split(" Tf\n", -1).length - 1);
+
+            String text = new PDFTextStripper().getText(pdfDocument);
+            assertTrue(text.contains("Report header"));
+            assertTrue(text.contains("Second line"));
+            assertTrue(text.contains("Title: Value"));
+            assertTrue(text.contains("Report footer"));
+        }
+    }
+
+    @Test
+    void testConvertRichParagraphSwitchesFontsAndUnderlinesRuns() throws IOException {
+        String value = "lorem ipsum ".repeat(30).strip();
+        EasyDocument document = new EasyDocument(50);
+        document.addParagraph(List.of(new TextRun("Name", true, true), TextRun.of(": " + value), new TextRun(" end", false, true)));
+
+        try (PDDocument pdfDocument = Loader.loadPDF(document.convert(8096))) {
+            PDPage page = pdfDocument.getPage(0);
+            String content = new String(page.getContents().readAllBytes(), StandardCharsets.ISO_8859_1);
+            // bold for the name and regular for the rest: the font is only switched where it changes
+            assertEquals(2, content.split(" Tf\n", -1).length - 1);
+            assertEquals(2, content.split(" m\n", -1).length - 1);
+
+            float nameWidth = FontRegistry.get(FontRegistry.CALIBRI_BOLD).getWidths().width('N');
+            for (char c : "ame".toCharArray()) {
+                nameWidth += FontRegistry.get(FontRegistry.CALIBRI_BOLD).getWidths().width(c);
+            }
+            String firstUnderline = content.substring(content.indexOf(" w\n") + 3, content.indexOf(" l\n"));
+            String[] numbers = firstUnderline.replace(" m\n", " ").split(" ");
+            assertEquals(50, Float.parseFloat(numbers[0]), 0.01f);
+            assertEquals(50 + nameWidth * TextType.PARAGRAPH.getFontSize(), Float.parseFloat(numbers[2]), 0.01f);
+
+            String text = new PDFTextStripper().getText(pdfDocument);
+            assertEquals("Name: " + value + " end", text.strip().replaceAll("\\s+", " "));
+        }
+    }
+
+    @Test
+    void testConvertSubsetsFontWithOnlyMissingGlyphs() throws IOException {
+        EasyDocument document = new EasyDocument(50);
+        // Calibri has no Bengali glyphs, so the bold font is loaded without any code point to embed
+        document.addHeading("অআ", true, false);
+        document.addParagraph("Text");
+
+        try (PDDocument pdfDocument = Loader.loadPDF(document.convert(8096))) {
+            PDResources resources = pdfDocument.getPage(0).getResources();
+            List<String> fontNames = new ArrayList<>();
+            for (COSName fontName : resources.getFontNames()) {
+                fontNames.add(resources.getFont(fontName).getName());
+            }
+
+            assertEquals(2, fontNames.size());
+            for (String fontName : fontNames) {
+                assertTrue(fontName.matches("[A-Z]{6}\\+Calibri.*"), fontName);
+            }
+        }
+    }
+
+    @Test
+    void testConvertStreamedParagraphMatchesStringParagraph() throws IOException {
+        StringBuilder log = new StringBuilder();
+        for (int index = 0; index < 2_000; index++) {
+            log.append("2024-01-01 12:00:").append(index % 60).append("\tINFO request ").append(index).append(" handled in ");
+            log.append("x".repeat(index % 300)).append(index % 7 == 0 ? "\n\n" : "\n");
+        }
+
+        byte[][] results = new byte[3][];
+        for (int variant = 0; variant < results.length; variant++) {
+            EasyDocument document = new EasyDocument(50);
+            document.setPageWindow(2);
+            switch (variant) {
+                case 0 -> document.addParagraph(log.toString());
+                case 1 -> document.addParagraph(new StringReader(log.toString()));
+                default -> document.addParagraph(log);
+            }
+            results[variant] = document.convert(8096);
+        }
+
+        try (PDDocument expected = Loader.loadPDF(results[0]); PDDocument reader = Loader.loadPDF(results[1]);
+                PDDocument charSequence = Loader.loadPDF(results[2])) {
+            assertTrue(expected.getNumberOfPages() > 10);
+            assertEquals(expected.getNumberOfPages(), reader.getNumberOfPages());
+            assertEquals(expected.getNumberOfPages(), charSequence.getNumberOfPages());
+            for (int page = 0; page < expected.getNumberOfPages(); page++) {
+                byte[] content = expected.getPage(page).getContents().readAllBytes();
+                assertArrayEquals(content, reader.getPage(page).getContents().readAllBytes());
+                assertArrayEquals(content, charSequence.getPage(page).getContents().readAllBytes());
+            }
+        }
+    }
+
+    @Test
+    void testConvertSharesHeaderAndFooterForm() throws IOException {
+        EasyDocument document = new EasyDocument(50);
+        fillLongDocument(document);
+
+        byte[] result = document.convert(8096);
+
+        try (PDDocument pdfDocument = Loader.loadPDF(result)) {
+            assertTrue(pdfDocument.getNumberOfPages() > 10);
+
+            COSBase sharedForm = null;
+            for (PDPage page : pdfDocument.getPages()) {
+                PDResources resources = page.getResources();
+                COSName formName = resources.getXObjectNames().iterator().next();
+                COSBase form = resources.getXObject(formName).getCOSObject();
+
+                assertTrue(sharedForm == null || sharedForm == form);
+                sharedForm = form;
+            }
+
+            String text = new PDFTextStripper().getText(pdfDocument);
+            assertEquals(pdfDocument.getNumberOfPages(), text.split("Footer", -1).length - 1);
+        }
+    }
+
+    @Test
+    void testConvertWithHeaderAndFooterPerPage() throws IOException {
+        EasyDocument document = new EasyDocument(50);
+        document.setHeaderAndFooterPerPage(true);
+        document.setHeader("Page header", false, false);
+        document.addParagraph("Text");
+
+        byte[] result = document.convert(8096);
+
+        try (PDDocument pdfDocument = Loader.loadPDF(result)) {
+            assertFalse(pdfDocument.getPage(0).getResources().getXObjectNames().iterator().hasNext());
+            assertTrue(new PDFTextStripper().getText(pdfDocument).contains("Page header"));
+        }
+    }
+
+    @Test
+    void testConvertInParallelWritesSamePages() throws IOException {
+        EasyDocument sequentialDocument = new EasyDocument(50);
+        sequentialDocument.setExecutor(null);
+        sequentialDocument.setPageNumbers("Page ", " of ");
+        fillLongDocument(sequentialDocument);
+
+        EasyDocument parallelDocument = new EasyDocument(50);
+        parallelDocument.setPageNumbers("Page ", " of ");
+        fillLongDocument(parallelDocument);
+
+        byte[] parallelResult;
+        try (ExecutorService executor = Executors.newFixedThreadPool(4)) {
+            parallelDocument.setExecutor(executor);
+            parallelResult = parallelDocument.convert(8096);
+        }
+
+        try (PDDocument expected = Loader.loadPDF(sequentialDocument.convert(8096)); PDDocument actual = Loader.loadPDF(parallelResult)) {
+            assertEquals(expected.getNumberOfPages(), actual.getNumberOfPages());
+
+            for (int index = 0; index < expected.getNumberOfPages(); index++) {
+                byte[] expectedContent = expected.getPage(index).getContents().readAllBytes();
+                byte[] actualContent = actual.getPage(index).getContents().readAllBytes();
+                assertArrayEquals(expectedContent, actualContent);
+            }
+
+            assertEquals(new PDFTextStripper().getText(expected), new PDFTextStripper().getText(actual));
+
+            // the fonts are subset in parallel
+            PDResources expectedResources = expected.getPage(0).getResources();
+            PDResources actualResources = actual.getPage(0).getResources();
+            for (COSName fontName : expectedResources.getFontNames()) {
+                PDFontDescriptor expectedFont = expectedResources.getFont(fontName).getFontDescriptor();
+                PDFontDescriptor actualFont = actualResources.getFont(fontName).getFontDescriptor();
+                assertArrayEquals(expectedFont.getFontFile2().toByteArray(), actualFont.getFontFile2().toByteArray());
+            }
+            assertEquals(2, expectedResources.getFontNames().spliterator().getExactSizeIfKnown());
+        }
+    }
+
+    @Test
+    void testConvertWithPageWindowStreamsIntoFile(@TempDir Path tempDir) throws IOException {
+        Path buffered = tempDir.resolve("buffered.pdf");
+        Path streamed = tempDir.resolve("streamed.pdf");
+
+        EasyDocument bufferedDocument = new EasyDocument(50);
+        fillLongDocument(bufferedDocument);
+        assertTrue(bufferedDocument.convert(buffered));
+
+        EasyDocument streamedDocument = new EasyDocument(50);
+        streamedDocument.setPageWindow(2);
+        fillLongDocument(streamedDocument);
+        assertTrue(streamedDocument.convert(streamed));
+
+        try (PDDocument expected = Loader.loadPDF(buffered.toFile()); PDDocument actual = Loader.loadPDF(streamed.toFile())) {
+            assertTrue(expected.getNumberOfPages() > 10);
+            assertEquals(pageTexts(expected), pageTexts(actual));
+        }
+    }
+
+    @Test
+    void testConvertEmptyDocumentDoesNotCreateFile(@TempDir Path tempDir) throws IOException {
+        Path path = tempDir.resolve("empty.pdf");
+
+        assertFalse(new EasyDocument(50).convert(path));
+        assertFalse(Files.exists(path));
+    }
+
+    @Test
+    void testConvertWithMemoryBudgetSpillsToScratchFile(@TempDir Path tempDir) throws IOException {
+        EasyDocument insert = new EasyDocument(50);
+        insert.addParagraph("Inserted page");
+        byte[] insertData = insert.convert(8096);
+
+        EasyDocument unbudgeted = new EasyDocument(50);
+        fillLongDocument(unbudgeted);
+        unbudgeted.addNewPages(insertData);
+
+        MemoryBudget budget = MemoryBudget.mixed(16 * 1024, tempDir);
+        EasyDocument document = new EasyDocument(50, 50, 50, 50, FontRegistry.CALIBRI, FontRegistry.CALIBRI_BOLD, budget);
+        fillLongDocument(document);
+        document.addNewPages(insertData);
+
+        byte[] result = document.convert(8096);
+
+        try (PDDocument expected = Loader.loadPDF(unbudgeted.convert(8096)); PDDocument pdf = Loader.loadPDF(result)) {
+            assertTrue(pdf.getNumberOfPages() > 10);
+            assertEquals(pageTexts(expected), pageTexts(pdf));
+        }
+
+        MemoryMetrics metrics = document.getMemoryMetrics();
+        assertEquals(2, metrics.getCaches());
+        assertTrue(metrics.hasSpilled());
+        assertTrue(metrics.getSpilledBytes() > 0);
+        assertEquals(0, metrics.getBufferedBytes());
+    }
+
+    @Test
+    void testConvertMetersMemoryOnlyWhenRequested() throws IOException {
+        EasyDocument unmetered = new EasyDocument(50);
+        unmetered.addParagraph("Text");
+        unmetered.convert(8096);
+        assertEquals(0, unmetered.getMemoryMetrics().getCaches());
+
+        EasyDocument metered = new EasyDocument(50, 50, 50, 50, FontRegistry.CALIBRI, FontRegistry.CALIBRI_BOLD, MemoryBudget.mainMemoryOnly().withMetrics());
+        fillLongDocument(metered);
+        metered.convert(8096);
+
+        MemoryMetrics metrics = metered.getMemoryMetrics();
+        assertEquals(1, metrics.getCaches());
+        assertTrue(metrics.getPeakBufferedBytes() > 0);
+        assertFalse(metrics.hasSpilled());
+        assertEquals(0, metrics.getBufferedBytes());
+    }
+
+    @Test
+    void testConvertWithPagesFromPathStreamAndRandomAccess(@TempDir Path tempDir) throws IOException {
+        EasyDocument insert = new EasyDocument(50);
+        insert.addParagraph("Inserted page");
+        Path insertFile = tempDir.resolve("insert.pdf");
+        assertTrue(insert.convert(insertFile));
+
+        EasyDocument document = new EasyDocument(50);
+        document.addParagraph("First page");
+        document.addNewPages(insertFile);
+        document.addNewPages(Files.newInputStream(insertFile));
+        document.addNewPages(new RandomAccessReadBufferedFile(insertFile));
+        document.addParagraph("Last page");
+
+        try (PDDocument pdf = Loader.loadPDF(document.convert(8096))) {
+            assertEquals(List.of("First page", "Inserted page", "Inserted page", "Inserted page", "Last page"), pageTexts(pdf));
+        }
+    }
+
+    @Test
+    void testConvertWithPageNumbersCountsInsertedPages(@TempDir Path tempDir) throws IOException {
+        EasyDocument insert = new EasyDocument(50);
+        insert.addParagraph("Inserted page");
+        insert.addPageBreak();
+        insert.addParagraph("Inserted page");
+        Path insertFile = tempDir.resolve("insert.pdf");
+        assertTrue(insert.convert(insertFile));
+
+        EasyDocument document = new EasyDocument(50);
+        document.setPageWindow(1);
+        document.setPageNumbers("Page ", " of ");
+        document.addParagraph("First page");
+        document.addNewPages(insertFile);
+        document.addParagraph("Last page");
+
+        try (PDDocument pdf = Loader.loadPDF(document.convert(8096))) {
+            assertEquals(4, pdf.getNumberOfPages());
+
+            PDFTextStripper textStripper = new PDFTextStripper();
+            textStripper.setStartPage(1);
+            textStripper.setEndPage(1);
+            assertTrue(textStripper.getText(pdf).contains("Page 1 of 4"));
+
+            textStripper.setStartPage(4);
+            textStripper.setEndPage(4);
+            assertTrue(textStripper.getText(pdf).contains("Page 4 of 4"));
+        }
+    }
+
+    @Test
+    void testMeasureMatchesConvert() throws IOException {
+        EasyDocument insert = new EasyDocument(50);
+        insert.addParagraph("Inserted page");
+        byte[] insertData = insert.convert(8096);
+
+        EasyDocument document = new EasyDocument(50);
+        fillLongDocument(document);
+        document.addNewPages(insertData);
+        document.addParagraph("Last line");
+
+        DocumentMeasure measure = document.measure();
+        DocumentMeasure.Line lastLine = measure.lines().getLast();
+
+        assertEquals("Last line", lastLine.text());
+        assertEquals(measure.pageCount(), lastLine.pageNumber());
+        assertEquals(TextType.PARAGRAPH, lastLine.type());
+
+        try (PDDocument pdfDocument = Loader.loadPDF(document.convert(8096))) {
+            assertEquals(measure.pageCount(), pdfDocument.getNumberOfPages());
+
+            PDFTextStripper textStripper = new PDFTextStripper();
+            textStripper.setStartPage(measure.pageCount() - 1);
+            textStripper.setEndPage(measure.pageCount() - 1);
+            assertTrue(textStripper.getText(pdfDocument).contains("Inserted page"));
+        }
+    }
+
+    @Test
+    void testTemplateCreatesIndependentDocuments() throws IOException {
+        EasyDocument templateDocument = new EasyDocument(50);
+        templateDocument.setDocumentInformation("creator", "author", "producer", "Statement", "subject", Calendar.getInstance(), "keywords", true);
+        templateDocument.setHeader("Template header", false, false);
+        templateDocument.addHeading("Terms and conditions", true, false);
+        templateDocument.addParagraph("Boilerplate paragraph. ".repeat(30));
+
+        DocumentTemplate template = templateDocument.toTemplate();
+        templateDocument.addParagraph("Only in the template document");
+
+        EasyDocument first = template.newDocument();
+        first.addParagraph("First customer");
+        EasyDocument second = template.newDocument();
+        second.addParagraph("Second customer");
+
+        try (PDDocument firstPdf = Loader.loadPDF(first.convert(8096)); PDDocument secondPdf = Loader.loadPDF(second.convert(8096))) {
+            String firstText = new PDFTextStripper().getText(firstPdf);
+            String secondText = new PDFTextStripper().getText(secondPdf);
+
+            assertTrue(firstText.contains("Terms and conditions") && firstText.contains("Template header") && firstText.contains("First customer"));
+            assertFalse(firstText.contains("Second customer") || firstText.contains("Only in the template document"));
+            assertTrue(secondText.contains("Terms and conditions") && secondText.contains("Second customer"));
+            assertEquals("Statement", secondPdf.getDocumentInformation().getTitle());
+
+            PDResources resources = firstPdf.getPage(0).getResources();
+            boolean boldFont = false;
+            for (COSName fontName : resources.getFontNames()) {
+                boldFont |= resources.getFont(fontName).getName().endsWith("Calibri-Bold");
+            }
+            assertTrue(boldFont);
+        }
+    }
+
+    @Test
+    void testConvertStreamingTableRepeatsHeaderOnEveryPage() throws IOException {
+        AtomicBoolean closed = new AtomicBoolean();
+        Stream<List<String>> rows = IntStream.range(0, 2000)
+                .mapToObj(row -> List.of("Row " + row, "Customer " + row, "A longer description which is wrapped within its column " + row))
+                .onClose(() -> closed.set(true));
+
+        EasyDocument document = new EasyDocument(50);
+        document.addHeading("Transactions", true, false);
+        document.addTable(new float[] { 80, 120, 200 }, List.of("Number", "Customer", "Description"), rows);
+        document.addParagraph("After the table");
+
+        try (PDDocument pdf = Loader.loadPDF(document.convert(8096))) {
+            assertTrue(pdf.getNumberOfPages() > 1);
+            assertTrue(closed.get());
+
+            PDFTextStripper stripper = new PDFTextStripper();
+            for (int page = 1; page <= pdf.getNumberOfPages(); page++) {
+                stripper.setStartPage(page);
+                stripper.setEndPage(page);
+                assertTrue(stripper.getText(pdf).contains("Description"), "header on page " + page);
+            }
+
+            stripper.setStartPage(1);
+            stripper.setEndPage(pdf.getNumberOfPages());
+            String text = stripper.getText(pdf);
+            assertTrue(text.contains("Row 1999") && text.contains("Customer 0") && text.endsWith("After the table" + System.lineSeparator()));
+        }
+    }
+
+    @Test
+    void testConvertRejectsNullTableRow() {
+        AtomicBoolean closed = new AtomicBoolean();
+        Stream<List<String>> rows = Stream.of(List.of("first"), null, List.of("third")).onClose(() -> closed.set(true));
+
+        EasyDocument document = new EasyDocument(50);
+        document.addTable(new float[] { 200 }, null, rows);
+
+        assertThrows(IllegalArgumentException.class, () -> document.convert(8096));
+        assertTrue(closed.get());
+    }
+
+    @Test
+    void testConvertWithSaveProfiles() throws IOException {
+        int[] sizes = new int[SaveProfile.values().length];
+        for (SaveProfile saveProfile : SaveProfile.values()) {
+            EasyDocument document = new EasyDocument(50);
+            document.setSaveProfile(saveProfile);
+            fillLongDocument(document);
+
+            byte[] result = document.convert(8096);
+            sizes[saveProfile.ordinal()] = result.length;
+            try (PDDocument pdf = Loader.loadPDF(result)) {
+                assertTrue(new PDFTextStripper().getText(pdf).contains("Heading 199"));
+            }
+        }
+
+        assertTrue(sizes[SaveProfile.FASTEST.ordinal()] > sizes[SaveProfile.BALANCED.ordinal()]);
+        assertTrue(sizes[SaveProfile.BALANCED.ordinal()] >= sizes[SaveProfile.SMALLEST.ordinal()]);
+    }
+
+    @Test
+    void testConvertReportsInstrumentationAndFlightRecorderEvents(@TempDir Path tempDir) throws IOException {
+        EasyDocument insert = new EasyDocument(50);
+        insert.addParagraph("Inserted page");
+        byte[] insertData = insert.convert(8096);
+
+        Map<Instrumentation.Phase, Long> phases = new EnumMap<>(Instrumentation.Phase.class);
+        Map<Instrumentation.Phase, Long> phaseAllocations = new EnumMap<>(Instrumentation.Phase.class);
+        AtomicReference<Instrumentation.Summary> summary = new AtomicReference<>();
+
+        EasyDocument document = new EasyDocument(50);
+        document.setInstrumentation(new Instrumentation() {
+
+            @Override
+            public void phaseCompleted(Instrumentation.Phase phase, long nanos, long allocatedBytes) {
+                phases.put(phase, nanos);
+                phaseAllocations.put(phase, allocatedBytes);
+            }
+
+            @Override
+            public void converted(Instrumentation.Summary converted) {
+                summary.set(converted);
+            }
+        });
+        document.addParagraph("Hello");
+        document.addNewPages(insertData);
+        document.addParagraph("World");
+
+        Path recordingFile = tempDir.resolve("convert.jfr");
+        byte[] result;
+        try (Recording recording = new Recording()) {
+            recording.enable("io.github.mjoe92.easypdfbox.Phase");
+            recording.enable("io.github.mjoe92.easypdfbox.Convert");
+            recording.start();
+            result = document.convert(8096);
+            recording.stop();
+            recording.dump(recordingFile);
+        }
+
+        assertEquals(Instrumentation.Phase.values().length, phases.size());
+        assertTrue(phases.get(Instrumentation.Phase.SAVE) > 0 && phases.get(Instrumentation.Phase.MERGE) > 0);
+        assertTrue(phaseAllocations.get(Instrumentation.Phase.SAVE) > 0 && phaseAllocations.get(Instrumentation.Phase.WRITE_PAGES) > 0);
+        assertTrue(summary.get().allocatedBytes() >= phaseAllocations.get(Instrumentation.Phase.SAVE));
+        assertEquals(new Instrumentation.Summary(3, 2, 10, summary.get().contentBytes(), 1, result.length, summary.get().allocatedBytes(),
+                summary.get().nanos()), summary.get());
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile);
+        assertEquals(Instrumentation.Phase.values().length, events.stream().filter(event -> event.getEventType().getName().endsWith("Phase")).count());
+        RecordedEvent convertEvent = events.stream().filter(event -> event.getEventType().getName().endsWith("Convert")).findFirst().orElseThrow();
+        assertEquals(3, convertEvent.getInt("pages"));
+        assertEquals(result.length, convertEvent.getLong("outputBytes"));
+        assertEquals(summary.get().allocatedBytes(), convertEvent.getLong("allocatedBytes"));
+    }
+
+    @Test
+    void testConvertMeasuresPhasesOnlyWhileRecorded() throws IOException {
+        Map<Instrumentation.Phase, Long> phases = new EnumMap<>(Instrumentation.Phase.class);
+        Instrumentation instrumentation = new Instrumentation() {
+
+            @Override
+            public void phaseCompleted(Instrumentation.Phase phase, long nanos) {
+                phases.put(phase, nanos);
+            }
+        };
+
+        EasyDocument unmeasured = new EasyDocument(50);
+        unmeasured.addParagraph("Wrapped without an instrumentation ".repeat(50));
+        unmeasured.setInstrumentation(instrumentation);
+        unmeasured.convert(8096);
+
+        assertEquals(0, phases.get(Instrumentation.Phase.WRAP));
+        assertTrue(phases.get(Instrumentation.Phase.WRITE_PAGES) > 0);
+
+        EasyDocument measured = new EasyDocument(50);
+        measured.setInstrumentation(instrumentation);
+        measured.addParagraph("Wrapped with an instrumentation ".repeat(50));
+        measured.convert(8096);
+
+        assertTrue(phases.get(Instrumentation.Phase.WRAP) > 0);
+    }
+
+    @Test
+    void testConvertStoresRepeatedlyInsertedPagesOnce() throws IOException {
+        EasyDocument insert = new EasyDocument(50);
+        insert.addParagraph("Terms and conditions ".repeat(200));
+        byte[] insertData = insert.convert(8096);
+        InsertCache insertCache = new InsertCache(1 << 20);
+
+        byte[][] results = new byte[3][];
+        for (int variant = 0; variant < results.length; variant++) {
+            EasyDocument document = new EasyDocument(50);
+            document.setInsertCache(insertCache);
+
+            for (int index = 0; index < 10; index++) {
+                document.addParagraph("Letter " + index);
+                if (variant == 0) {
+                    // pages from a stream can't be identified, they are appended again and only their streams are shared
+                    document.addNewPages(new ByteArrayInputStream(insertData));
+                } else {
+                    document.addNewPages(insertData);
+                }
+            }
+
+            results[variant] = document.convert(8096);
+        }
+
+        // the embedded font of the inserted pages is stored once instead of ten times
+        assertTrue(results[0].length < insertData.length * 3);
+        assertTrue(results[1].length < results[0].length);
+        assertEquals(results[1].length, results[2].length);
+        assertEquals(1, insertCache.getMisses());
+        assertEquals(1, insertCache.getHits());
+        assertEquals(1, insertCache.size());
+
+        try (PDDocument pdf = Loader.loadPDF(results[1])) {
+            assertEquals(20, pdf.getNumberOfPages());
+            assertEquals(pdf.getPage(1).getCOSObject().getItem(COSName.CONTENTS), pdf.getPage(19).getCOSObject().getItem(COSName.CONTENTS));
+
+            PDFTextStripper textStripper = new PDFTextStripper();
+            for (int page = 1; page <= pdf.getNumberOfPages(); page++) {
+                textStripper.setStartPage(page);
+                textStripper.setEndPage(page);
+                assertTrue(textStripper.getText(pdf).startsWith(page % 2 == 0 ? "Terms and conditions" : "Letter " + page / 2));
+            }
+        }
+    }
+
+    @Test
+    void testConvertAsyncIsAbortedOnceCancelledOrTimedOut() throws Exception {
+        EasyDocument insert = new EasyDocument(50);
+        insert.addParagraph("Inserted page");
+        byte[] insertData = insert.convert(8096);
+
+        List<Runnable> tasks = new ArrayList<>();
+        AtomicBoolean converted = new AtomicBoolean();
+        AtomicBoolean insertClosed = new AtomicBoolean();
+
+        EasyDocument cancelled = new EasyDocument(50);
+        cancelled.setInstrumentation(new Instrumentation() {
+
+            @Override
+            public void converted(Instrumentation.Summary summary) {
+                converted.set(true);
+            }
+        });
+        fillLongDocument(cancelled);
+        cancelled.addNewPages(new ByteArrayInputStream(insertData) {
+
+            @Override
+            public void close() {
+                insertClosed.set(true);
+            }
+        });
+
+        CompletableFuture<byte[]> cancelledResult = cancelled.convertAsync(tasks::add);
+        cancelledResult.cancel(false);
+        tasks.removeFirst().run();
+        assertTrue(cancelledResult.isCancelled());
+        assertFalse(converted.get());
+        assertTrue(insertClosed.get());
+
+        EasyDocument timedOut = new EasyDocument(50);
+        fillLongDocument(timedOut);
+        CompletableFuture<byte[]> timedOutResult = timedOut.convertAsync(tasks::add, Duration.ofMillis(1));
+        ExecutionException exception = assertThrows(ExecutionException.class, timedOutResult::get);
+        assertInstanceOf(TimeoutException.class, exception.getCause());
+        tasks.removeFirst().run();
+
+        EasyDocument expected = new EasyDocument(50);
+        fillLongDocument(expected);
+        EasyDocument document = new EasyDocument(50);
+        fillLongDocument(document);
+        CompletableFuture<byte[]> rejected = document.convertAsync(task -> {
+            throw new RejectedExecutionException("full");
+        });
+        assertInstanceOf(RejectedExecutionException.class, assertThrows(ExecutionException.class, rejected::get).getCause());
+        try (PDDocument expectedPdf = Loader.loadPDF(expected.convert(8096));
+                PDDocument pdf = Loader.loadPDF(document.convertAsync(ForkJoinPool.commonPool(), Duration.ofMinutes(1)).get())) {
+            assertEquals(pageTexts(expectedPdf), pageTexts(pdf));
+        }
+    }
+
+    @Test
+    void testConvertReusesPagesOfTheSameFileWithoutInsertCache(@TempDir Path tempDir) throws IOException {
+        EasyDocument insert = new EasyDocument(50);
+        insert.addParagraph("Terms and conditions");
+        Path insertFile = tempDir.resolve("insert.pdf");
+        Files.write(insertFile, insert.convert(8096));
+
+        EasyDocument document = new EasyDocument(50);
+        document.addNewPages(insertFile);
+        document.addParagraph("Letter");
+        document.addNewPages(insertFile);
+
+        try (PDDocument pdf = Loader.loadPDF(document.convert(8096))) {
+            assertEquals(List.of("Terms and conditions", "Letter", "Terms and conditions"), pageTexts(pdf));
+            assertEquals(pdf.getPage(0).getCOSObject().getItem(COSName.CONTENTS), pdf.getPage(2).getCOSObject().getItem(COSName.CONTENTS));
+        }
+    }
+
+    @Test
+    void testInsertCacheSkipsSourceExceedingItsSize() throws IOException {
+        EasyDocument small = new EasyDocument(50);
+        small.addParagraph("Letterhead");
+        byte[] smallData = small.convert(8096);
+        EasyDocument large = new EasyDocument(50);
+        large.addParagraph("Terms and conditions ".repeat(2_000));
+        byte[] largeData = large.convert(8096);
+        InsertCache insertCache = new InsertCache(smallData.length);
+
+        EasyDocument document = new EasyDocument(50);
+        document.setInsertCache(insertCache);
+        document.addNewPages(smallData);
+        document.addNewPages(largeData);
+        document.addNewPages(smallData);
+
+        try (PDDocument pdf = Loader.loadPDF(document.convert(8096)); PDDocument largePdf = Loader.loadPDF(largeData)) {
+            List<String> expected = new ArrayList<>(List.of("Letterhead"));
+            expected.addAll(pageTexts(largePdf));
+            expected.add("Letterhead");
+            assertEquals(expected, pageTexts(pdf));
+        }
+
+        assertTrue(largeData.length > smallData.length);
+        assertEquals(2, insertCache.getMisses());
+        assertEquals(0, insertCache.getEvictions());
+        assertEquals(1, insertCache.size());
+        assertEquals(smallData.length, insertCache.getBytes());
+    }
+
+    /** @return the stripped text of every page */
+    private static List<String> pageTexts(PDDocument pdf) throws IOException {
+        PDFTextStripper textStripper = new PDFTextStripper();
+        List<String> texts = new ArrayList<>();
+        for (int page = 1; page <= pdf.getNumberOfPages(); page++) {
+            textStripper.setStartPage(page);
+            textStripper.setEndPage(page);
+            texts.add(textStripper.getText(pdf).strip());
+        }
+
+        return texts;
+    }
+
+    private static void fillLongDocument(EasyDocument document) {
+        document.setHeader("Header", false, false);
+        document.setFooter("Footer");
+
+        for (int index = 0; index < 200; index++) {
+            document.addHeading("Heading " + index, true, false);
+            document.addParagraph("Lorem ipsum dolor sit amet, consectetur adipiscing elit. ".repeat(10));
+            document.addList("first\nsecond\nthird", "- ", 10);
+            document.addNewline();
+            if (index % 50 == 0) {
+                document.addPageBreak();
+            }
+        }
+    }
 }
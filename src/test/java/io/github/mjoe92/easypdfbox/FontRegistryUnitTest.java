@@ -0,0 +1,116 @@
+package io.github.mjoe92.easypdfbox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.jupiter.api.Test;
+
+class FontRegistryUnitTest {
+
+    @Test
+    void testBundledFontIsParsedOnce() {
+        RegisteredFont font = FontRegistry.get(FontRegistry.CALIBRI);
+
+        assertSame(font, FontRegistry.get(FontRegistry.CALIBRI));
+        assertTrue(font.getAdvanceWidth('W') > font.getAdvanceWidth('i'));
+    }
+
+    @Test
+    void testWidthsArePerFontAndStyle() {
+        GlyphWidths normal = FontRegistry.get(FontRegistry.CALIBRI).getWidths();
+        GlyphWidths bold = FontRegistry.get(FontRegistry.CALIBRI_BOLD).getWidths();
+
+        assertTrue(bold.width('m') > normal.width('m'));
+        assertTrue(normal.hasKerning());
+        assertTrue(normal.kerning('A', 'V') < 0);
+        assertEquals(0, normal.kerning('A', 0x1F600));
+        assertEquals(normal.width(0x10FFFF), normal.width(0xFFFF));
+    }
+
+    @Test
+    void testPrecomputedMetricsEqualParsedFont() throws IOException {
+        RegisteredFont parsed = FontRegistry.parseBundled(FontRegistry.CALIBRI);
+        ByteArrayOutputStream metricsFile = new ByteArrayOutputStream();
+        parsed.getMetrics().write(metricsFile);
+
+        AtomicInteger parseCount = new AtomicInteger();
+        RegisteredFont precomputed = new RegisteredFont("precomputed", FontMetrics.read(new ByteArrayInputStream(metricsFile.toByteArray())), () -> {
+            parseCount.incrementAndGet();
+            return parsed.getTrueTypeFont();
+        });
+
+        assertEquals(parsed.getAscent(), precomputed.getAscent());
+        assertEquals(parsed.getDescent(), precomputed.getDescent());
+        for (int codePoint = 0; codePoint < 0x20000; codePoint++) {
+            assertEquals(parsed.getWidths().width(codePoint), precomputed.getWidths().width(codePoint));
+            assertEquals(parsed.getWidths().glyphId(codePoint), precomputed.getWidths().glyphId(codePoint));
+        }
+        assertEquals(parsed.getWidths().kerning('A', 'V'), precomputed.getWidths().kerning('A', 'V'));
+        assertFalse(precomputed.isParsed());
+
+        try (PDDocument document = new PDDocument()) {
+            precomputed.load(document);
+            precomputed.load(document);
+        }
+        assertTrue(precomputed.isParsed());
+        assertEquals(1, parseCount.get());
+    }
+
+    @Test
+    void testRegisterCustomFont() throws IOException {
+        try (InputStream fontStream = EasyDocument.class.getResourceAsStream("calibri.ttf")) {
+            FontRegistry.register("custom-calibri", fontStream);
+        }
+
+        assertTrue(FontRegistry.isRegistered("custom-calibri"));
+        assertThrows(IllegalStateException.class, () -> FontRegistry.register("custom-calibri", InputStream.nullInputStream()));
+        assertThrows(IllegalArgumentException.class, () -> FontRegistry.get("unknown"));
+
+        EasyDocument document = new EasyDocument(50, 50, 50, 50, "custom-calibri", FontRegistry.CALIBRI_BOLD);
+        document.addParagraph("Custom font");
+
+        assertNotNull(document.convert(8096));
+    }
+
+    @Test
+    void testConcurrentDocumentsShareFonts() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<byte[]>> results = new ArrayList<>();
+            for (int index = 0; index < 32; index++) {
+                String text = "Document " + index + " with some text to wrap. ".repeat(40);
+                results.add(executor.submit(() -> {
+                    EasyDocument document = new EasyDocument(50);
+                    document.addHeading(text.substring(0, 20), true, false);
+                    document.addParagraph(text);
+                    return document.convert(8096);
+                }));
+            }
+
+            for (Future<byte[]> result : results) {
+                try (PDDocument pdf = Loader.loadPDF(result.get())) {
+                    assertEquals(1, pdf.getNumberOfPages());
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
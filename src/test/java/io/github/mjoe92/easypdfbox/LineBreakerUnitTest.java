@@ -0,0 +1,153 @@
+package io.github.mjoe92.easypdfbox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class LineBreakerUnitTest {
+
+    private static final GlyphWidths WIDTHS = FontRegistry.get(FontRegistry.CALIBRI).getWidths();
+    private static final float FONT_SIZE = 12;
+
+    @Test
+    void testShortTextIsOneLine() {
+        assertEquals(List.of("Hello world"), wrap("Hello world", 500));
+        assertEquals(List.of(""), wrap("", 500));
+    }
+
+    @Test
+    void testNewLinesBreakAndTrailingEmptyLinesAreDropped() {
+        assertEquals(List.of("first", "", "second"), wrap("first\n\nsecond\n\n", 500));
+        assertEquals(List.of("windows", "line"), wrap("windows\r\nline", 500));
+    }
+
+    @Test
+    void testWrapsAtLastSpace() {
+        float width = measure("lorem ipsum") + 1;
+
+        assertEquals(List.of("lorem ipsum", "dolor sit", "amet"), wrap("lorem ipsum dolor sit   amet", width));
+    }
+
+    @Test
+    void testWrapsAfterHyphenButNotAtNonBreakingSpace() {
+        float width = Math.max(measure("well-"), measure("known")) + 1;
+        assertEquals(List.of("well-", "known"), wrap("well-known", width));
+
+        String nonBreaking = "10 000";
+        assertEquals(List.of("a", nonBreaking), wrap("a " + nonBreaking, measure(nonBreaking) + 1));
+    }
+
+    @Test
+    void testBreaksOverLongWordAndKeepsSurrogatePairs() {
+        String word = "😀".repeat(10);
+        List<String> lines = wrap(word, measure("😀".repeat(3)) + 1);
+
+        assertEquals(List.of("😀".repeat(3), "😀".repeat(3), "😀".repeat(3), "😀"), lines);
+    }
+
+    @Test
+    void testLeadingSpacesBeforeOverLongWordAddNoEmptyLine() {
+        List<String> lines = wrap("   " + "W".repeat(40), 100);
+
+        assertEquals("W".repeat(40), String.join("", lines));
+        assertTrue(lines.stream().noneMatch(String::isEmpty));
+    }
+
+    @Test
+    void testLongTextIsWrappedWithinWidth() {
+        String text = "The quick brown fox jumps over the lazy dog. ".repeat(2_000);
+        float maxWidth = 400;
+
+        LineRanges ranges = new LineRanges();
+        LineBreaker.wrap(text, 0, text.length(), WIDTHS, FONT_SIZE, false, maxWidth, ranges);
+
+        int previousEnd = 0;
+        for (int line = 0; line < ranges.size(); line++) {
+            assertTrue(ranges.width(line) <= maxWidth);
+            assertTrue(ranges.start(line) >= previousEnd);
+            assertEquals(measure(text.substring(ranges.start(line), ranges.end(line))), ranges.width(line), 0.01);
+            previousEnd = ranges.end(line);
+        }
+
+        assertTrue(ranges.size() > 100);
+    }
+
+    @Test
+    void testWrapsRunsInDifferentFontsAcrossTheirBoundaries() {
+        GlyphWidths boldWidths = FontRegistry.get(FontRegistry.CALIBRI_BOLD).getWidths();
+        String text = "Bold words then regular words";
+        int[] runEnds = { "Bold words".length(), text.length() };
+        GlyphWidths[] runWidths = { boldWidths, WIDTHS };
+
+        float boldWidth = 0;
+        for (char c : "Bold words".toCharArray()) {
+            boldWidth += LineBreaker.measure(-1, c, boldWidths, false) * FONT_SIZE;
+        }
+        float width = boldWidth + measure(" then") + 1;
+
+        LineRanges ranges = new LineRanges();
+        LineBreaker.wrap(text, runEnds, runWidths, FONT_SIZE, false, width, ranges);
+
+        assertEquals(2, ranges.size());
+        assertEquals("Bold words then", text.substring(ranges.start(0), ranges.end(0)));
+        assertEquals(boldWidth + measure(" then"), ranges.width(0), 0.01);
+        assertEquals("regular words", text.substring(ranges.start(1), ranges.end(1)));
+    }
+
+    @Test
+    void testLinesOfRunsHaveTheMeasuredFragments() {
+        GlyphWidths boldWidths = FontRegistry.get(FontRegistry.CALIBRI_BOLD).getWidths();
+        String text = "Bold words then regular words";
+        int[] runEnds = { "Bold words ".length(), text.length() };
+        GlyphWidths[] runWidths = { boldWidths, WIDTHS };
+
+        float boldWidth = 0;
+        for (char c : "Bold words ".toCharArray()) {
+            boldWidth += LineBreaker.measure(-1, c, boldWidths, false) * FONT_SIZE;
+        }
+
+        LineRanges ranges = new LineRanges();
+        LineBreaker.wrap(text, runEnds, runWidths, FONT_SIZE, false, boldWidth + measure("then") + 1, ranges);
+
+        assertEquals(2, ranges.size());
+        assertEquals(0, ranges.firstFragment(0));
+        assertEquals(2, ranges.fragmentEnd(0));
+        assertEquals(0, ranges.fragmentRun(0));
+        assertEquals("Bold words ".length(), ranges.fragmentLength(0));
+        assertEquals(boldWidth, ranges.fragmentWidth(0), 0.01);
+        assertEquals(1, ranges.fragmentRun(1));
+        assertEquals("then".length(), ranges.fragmentLength(1));
+        assertEquals(measure("then"), ranges.fragmentWidth(1), 0.01);
+
+        // the continuation line starts after the space, within the second run
+        assertEquals(3, ranges.fragmentEnd(1));
+        assertEquals(1, ranges.fragmentRun(2));
+        assertEquals("regular words".length(), ranges.fragmentLength(2));
+        assertEquals(measure("regular words"), ranges.fragmentWidth(2), 0.01);
+    }
+
+    private static List<String> wrap(String text, float maxWidth) {
+        LineRanges ranges = new LineRanges();
+        LineBreaker.wrap(text, 0, text.length(), WIDTHS, FONT_SIZE, false, maxWidth, ranges);
+
+        List<String> lines = new ArrayList<>();
+        for (int line = 0; line < ranges.size(); line++) {
+            lines.add(text.substring(ranges.start(line), ranges.end(line)));
+        }
+
+        return lines;
+    }
+
+    private static float measure(String text) {
+        float width = 0;
+        for (int index = 0; index < text.length(); index = text.offsetByCodePoints(index, 1)) {
+            width += LineBreaker.measure(-1, text.codePointAt(index), WIDTHS, false) * FONT_SIZE;
+        }
+
+        return width;
+    }
+}
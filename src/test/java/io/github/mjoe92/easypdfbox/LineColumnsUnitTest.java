@@ -0,0 +1,90 @@
+package io.github.mjoe92.easypdfbox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class LineColumnsUnitTest {
+
+    private static final RegisteredFont NORMAL = FontRegistry.get(FontRegistry.CALIBRI);
+    private static final RegisteredFont BOLD = FontRegistry.get(FontRegistry.CALIBRI_BOLD);
+
+    @Test
+    void testLinesOfTheSameStoreShareCharsAndStyles() {
+        LineColumns lines = new LineColumns(new TextStore());
+        lines.add("Title: value", 0, 12, 50, TextType.PARAGRAPH, List.of(new FontFragment(6, BOLD, true), new FontFragment(6, NORMAL, false)),
+                new float[] { 30, 35 });
+
+        LineColumns page = new LineColumns(lines.store());
+        page.add(lines, 0);
+
+        assertSame(lines.chars(0), page.chars(0));
+        assertEquals("Title: value", page.text(0));
+        assertEquals(2, page.fragmentEnd(0) - page.firstFragment(0));
+        assertSame(BOLD, page.fragmentFont(0));
+        assertTrue(page.fragmentUnderlined(0));
+        assertEquals(35, page.fragmentAdvance(1));
+        // the styles are interned on the font and underline only
+        assertEquals(0, lines.store().style(BOLD, true));
+        assertEquals(1, lines.store().style(NORMAL, false));
+    }
+
+    @Test
+    void testLinesOfAnotherStoreAreCopied() {
+        LineColumns lines = new LineColumns(new TextStore());
+        lines.add(TextType.NEW_LINE);
+        lines.add("a\tb", 0, 3, 50, TextType.PARAGRAPH, new FontFragment(0, BOLD, false), 20);
+
+        LineColumns copy = lines.copyFrom(0);
+
+        assertNotSame(lines.store(), copy.store());
+        assertFalse(copy.hasText(0));
+        assertEquals(TextType.NEW_LINE, copy.type(0));
+        assertEquals("a" + Constants.TAB_AS_SPACES + "b", copy.text(1));
+        assertSame(BOLD, copy.fragmentFont(copy.firstFragment(1)));
+        assertEquals(20, copy.width(1));
+    }
+
+    @Test
+    void testRemoveFirstKeepsTheFragmentsOfTheRemainingLines() {
+        LineColumns lines = new LineColumns(new TextStore());
+        lines.add("first", 0, 5, 50, TextType.PARAGRAPH, new FontFragment(0, NORMAL, false), 25);
+        lines.add("second line", 0, 11, 50, TextType.PARAGRAPH, List.of(new FontFragment(7, NORMAL, true), new FontFragment(4, BOLD, false)),
+                new float[] { 40, 20 });
+        lines.add(TextType.PAGE_BREAK);
+
+        lines.removeFirst(1);
+
+        assertEquals(2, lines.size());
+        assertEquals("second line", lines.text(0));
+        assertEquals(0, lines.firstFragment(0));
+        assertEquals(2, lines.fragmentEnd(0));
+        assertEquals(7, lines.fragmentLength(0));
+        assertTrue(lines.fragmentUnderlined(0));
+        assertSame(BOLD, lines.fragmentFont(1));
+        assertEquals(20, lines.fragmentAdvance(1));
+        assertEquals(2, lines.firstFragment(1));
+        assertEquals(2, lines.fragmentEnd(1));
+        assertEquals(TextType.PAGE_BREAK, lines.type(1));
+    }
+
+    @Test
+    void testClearDropsTheCharsAndStyles() {
+        LineColumns lines = new LineColumns(new TextStore());
+        lines.add("text", 0, 4, 50, TextType.PARAGRAPH, new FontFragment(0, NORMAL, true), 20);
+
+        lines.clear();
+        lines.add("more", 0, 4, 50, TextType.PARAGRAPH, new FontFragment(0, BOLD, false), 20);
+
+        assertEquals(1, lines.size());
+        assertEquals("more", lines.text(0));
+        assertEquals(0, lines.start(0));
+        assertEquals(0, lines.store().style(BOLD, false));
+    }
+}
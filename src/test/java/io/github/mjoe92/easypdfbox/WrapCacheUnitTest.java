@@ -0,0 +1,85 @@
+package io.github.mjoe92.easypdfbox;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.jupiter.api.Test;
+
+class WrapCacheUnitTest {
+
+    private static final GlyphWidths WIDTHS = FontRegistry.get(FontRegistry.CALIBRI).getWidths();
+
+    @Test
+    void testWrapReturnsCachedLines() {
+        WrapCache wrapCache = new WrapCache(8);
+        String text = "Lorem ipsum dolor sit amet, consectetur adipiscing elit. ".repeat(5);
+
+        LineRanges expected = new LineRanges();
+        LineBreaker.wrap(text, 0, text.length(), WIDTHS, 12, false, 200, expected);
+
+        for (int lookup = 0; lookup < 3; lookup++) {
+            LineRanges lines = new LineRanges();
+            wrapCache.wrap(text, WIDTHS, 12, false, 200, lines);
+
+            assertEquals(expected.size(), lines.size());
+            for (int line = 0; line < lines.size(); line++) {
+                assertEquals(expected.start(line), lines.start(line));
+                assertEquals(expected.end(line), lines.end(line));
+                assertEquals(expected.width(line), lines.width(line));
+            }
+        }
+
+        assertEquals(2, wrapCache.getHits());
+        assertEquals(1, wrapCache.getMisses());
+        assertEquals(2 / 3d, wrapCache.getHitRate(), 0.0001);
+
+        // another available width is another entry
+        wrapCache.wrap(text, WIDTHS, 12, false, 300, new LineRanges());
+        assertEquals(2, wrapCache.size());
+    }
+
+    @Test
+    void testWrapEvictsLeastRecentlyUsed() {
+        WrapCache wrapCache = new WrapCache(2);
+
+        wrapCache.wrap("first", WIDTHS, 12, false, 200, new LineRanges());
+        wrapCache.wrap("second", WIDTHS, 12, false, 200, new LineRanges());
+        wrapCache.wrap("first", WIDTHS, 12, false, 200, new LineRanges());
+        wrapCache.wrap("third", WIDTHS, 12, false, 200, new LineRanges());
+        wrapCache.wrap("first", WIDTHS, 12, false, 200, new LineRanges());
+        wrapCache.wrap("second", WIDTHS, 12, false, 200, new LineRanges());
+
+        assertEquals(2, wrapCache.size());
+        assertEquals(2, wrapCache.getEvictions());
+        assertEquals(2, wrapCache.getHits());
+        assertEquals(4, wrapCache.getMisses());
+    }
+
+    @Test
+    void testConvertWithCacheEqualsWithout() throws IOException {
+        WrapCache wrapCache = new WrapCache(64);
+
+        EasyDocument cached = new EasyDocument(50);
+        cached.setWrapCache(wrapCache);
+        EasyDocument uncached = new EasyDocument(50);
+        for (EasyDocument document : new EasyDocument[] { cached, uncached }) {
+            for (int index = 0; index < 20; index++) {
+                document.addUnderlinedTitleColonValue("Customer", "Jane Doe");
+                document.addParagraph("The same legal clause is repeated in every section of the statement. ".repeat(3));
+            }
+        }
+
+        assertEquals(38, wrapCache.getHits());
+        assertArrayEquals(contentOf(uncached), contentOf(cached));
+    }
+
+    private static byte[] contentOf(EasyDocument document) throws IOException {
+        try (PDDocument pdf = Loader.loadPDF(document.convert(8096))) {
+            return pdf.getPage(0).getContents().readAllBytes();
+        }
+    }
+}